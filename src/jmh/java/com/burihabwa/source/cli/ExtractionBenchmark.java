@@ -0,0 +1,81 @@
+/*
+ * Copyright (C) 2023 Dorian Burihabwa
+ * This code is released under [MIT No Attribution](https://opensource.org/licenses/MIT-0) license.
+ */
+package com.burihabwa.source.cli;
+
+import com.burihabwa.source.checks.SourceFileExtractor;
+import com.burihabwa.source.checks.SymbolPool;
+import com.burihabwa.source.graph.SourceFile;
+import org.openjdk.jmh.annotations.*;
+import org.sonar.plugins.java.api.tree.CompilationUnitTree;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Extraction of a parsed file with expression-heavy method bodies, with and without the declarations-only mode.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ExtractionBenchmark {
+    private static final int METHODS = 200;
+
+    @Param({"false", "true"})
+    public boolean declarationsOnly;
+
+    private Path file;
+    private CompilationUnitTree tree;
+    private final SymbolPool symbols = new SymbolPool();
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        file = Files.createTempFile("Extracted", ".java");
+        Files.writeString(file, source(), StandardCharsets.UTF_8);
+        tree = new JavaFileParser(Collections.emptyList(), Collections.emptyList(), StandardCharsets.UTF_8).parse(file);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    @Benchmark
+    public SourceFile extract() {
+        return SourceFileExtractor.extract(file, tree, declarationsOnly);
+    }
+
+    /**
+     * Extraction as done by an analysis, the names being already pooled by the previous files.
+     */
+    @Benchmark
+    public SourceFile extractWithSharedPool() {
+        return SourceFileExtractor.extract(file, tree, declarationsOnly, symbols);
+    }
+
+    private static String source() {
+        StringBuilder source = new StringBuilder()
+                .append("package org.bench;\n")
+                .append("import java.util.List;\n")
+                .append("import java.util.stream.Collectors;\n")
+                .append("class Extracted {\n");
+        for (int method = 0; method < METHODS; method++) {
+            source.append("  List<String> method").append(method).append("(List<String> values) {\n")
+                    .append("    Runnable task = new Runnable() { public void run() { values.clear(); } };\n")
+                    .append("    if (values.isEmpty()) { task.run(); }\n")
+                    .append("    return values.stream().map(value -> value + ").append(method).append(")\n")
+                    .append("        .filter(value -> !value.isEmpty()).sorted((a, b) -> a.compareTo(b))\n")
+                    .append("        .collect(Collectors.toList());\n")
+                    .append("  }\n");
+        }
+        return source.append("}\n").toString();
+    }
+}
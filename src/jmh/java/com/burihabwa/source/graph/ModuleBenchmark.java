@@ -0,0 +1,120 @@
+/*
+ * Copyright (C) 2023 Dorian Burihabwa
+ * This code is released under [MIT No Attribution](https://opensource.org/licenses/MIT-0) license.
+ */
+package com.burihabwa.source.graph;
+
+import com.burihabwa.source.checks.GraphDependencyRule;
+import com.burihabwa.source.checks.utils.SyntheticCodebase;
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Building, loading, writing and querying modules of 1k to 100k files.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class ModuleBenchmark {
+    @Param({"1000", "10000", "100000"})
+    public int files;
+
+    private List<SourceFile> sourceFiles;
+    private Module module;
+    private Path directory;
+    private Path graph;
+    private Path output;
+    private Path[] paths;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        sourceFiles = SyntheticCodebase.withSeed(42).files(files).sourceFiles();
+        module = new Module(sourceFiles);
+        directory = Files.createTempDirectory("module-benchmark");
+        graph = directory.resolve("module-graph.json");
+        module.write(graph);
+        output = directory.resolve("output-graph.json");
+        paths = sourceFiles.stream().map(sourceFile -> sourceFile.path).toArray(Path[]::new);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(graph);
+        Files.deleteIfExists(output);
+        Files.deleteIfExists(directory);
+    }
+
+    @Benchmark
+    public Module construct() {
+        return new Module(sourceFiles);
+    }
+
+    @Benchmark
+    public Module parse() throws IOException {
+        return Module.of(graph);
+    }
+
+    /**
+     * Loading through a Gson tree of the whole file, as {@link Module#of(Path)} did before it streamed the graph.
+     */
+    @Benchmark
+    public Module parseTree() throws IOException {
+        JsonObject object;
+        try (Reader reader = Files.newBufferedReader(graph, StandardCharsets.UTF_8)) {
+            object = new Gson().fromJson(reader, JsonObject.class);
+        }
+        ModuleBuilder builder = new ModuleBuilder();
+        for (JsonElement element : object.getAsJsonArray("files")) {
+            JsonObject file = element.getAsJsonObject();
+            builder.addSourceFile(file.get("path").getAsString(), strings(file.getAsJsonArray("classes")), strings(file.getAsJsonArray("imports")));
+        }
+        return builder.build();
+    }
+
+    private static List<String> strings(JsonArray array) {
+        List<String> strings = new ArrayList<>(array.size());
+        for (JsonElement element : array) {
+            strings.add(element.getAsString());
+        }
+        return strings;
+    }
+
+    @Benchmark
+    public String serialize() {
+        return module.toString();
+    }
+
+    @Benchmark
+    public Path writeFilesToDisk() {
+        return GraphDependencyRule.writeFilesToDisk(output, sourceFiles);
+    }
+
+    @Benchmark
+    public String toDot() {
+        return module.toDot();
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public List<SourceFile> impactOfChange() {
+        Path changed = paths[next];
+        next = (next + 1) % paths.length;
+        return module.getSourceFilesImpactedByChangeOf(changed);
+    }
+}
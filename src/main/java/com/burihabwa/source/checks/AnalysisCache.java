@@ -0,0 +1,165 @@
+/*
+ * Copyright (C) 2023 Dorian Burihabwa
+ * This code is released under [MIT No Attribution](https://opensource.org/licenses/MIT-0) license.
+ */
+package com.burihabwa.source.checks;
+
+import com.burihabwa.source.graph.SourceFile;
+import org.sonar.api.batch.fs.InputFile;
+import org.sonar.plugins.java.api.ModuleScannerContext;
+import org.sonar.plugins.java.api.caching.CacheContext;
+
+import javax.annotation.CheckForNull;
+import java.io.*;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Cache of the classes and imports extracted from each source file, keyed by the content of the file.
+ * <p>
+ * The cache is best-effort: entries that cannot be read or written are treated as misses so that the analysis
+ * falls back to parsing the file. Entries live in the analysis cache of the SonarQube runtime: sonar-java only asks
+ * to skip unchanged files when that cache is enabled, so the rule keeps no cache of its own otherwise.
+ */
+abstract class AnalysisCache {
+    private static final String KEY_PREFIX = "src-dependency-graph:";
+    private static final int ENTRY_VERSION = 1;
+    private static final int HASH_BUFFER_SIZE = 1 << 13;
+
+    static AnalysisCache of(ModuleScannerContext context) {
+        CacheContext cacheContext = context.getCacheContext();
+        if (cacheContext != null && cacheContext.isCacheEnabled()) {
+            return new SonarAnalysisCache(cacheContext);
+        }
+        return DisabledAnalysisCache.INSTANCE;
+    }
+
+    /**
+     * @return The key of the cache entry matching the current content of the file, null if the file cannot be read.
+     */
+    @CheckForNull
+    static String keyOf(InputFile inputFile) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        byte[] buffer = new byte[HASH_BUFFER_SIZE];
+        try (InputStream in = inputFile.inputStream()) {
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                digest.update(buffer, 0, read);
+            }
+        } catch (IOException e) {
+            return null;
+        }
+        return KEY_PREFIX + inputFile.key() + ":" + toHex(digest.digest());
+    }
+
+    static String toHex(byte[] bytes) {
+        StringBuilder builder = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            builder.append(Character.forDigit((b >> 4) & 0xF, 16));
+            builder.append(Character.forDigit(b & 0xF, 16));
+        }
+        return builder.toString();
+    }
+
+    static byte[] encode(List<String> classes, List<String> imports) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(ENTRY_VERSION);
+            writeStrings(out, classes);
+            writeStrings(out, imports);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * @return The source file stored in the entry, null if the entry was written by another version of the plugin.
+     */
+    @CheckForNull
+    static SourceFile decode(Path path, byte[] entry, SymbolPool symbols) {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(entry))) {
+            if (in.readByte() != ENTRY_VERSION) {
+                return null;
+            }
+            List<String> classes = readStrings(in, symbols);
+            List<String> imports = readStrings(in, symbols);
+            return new SourceFile(path, classes, imports);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private static void writeStrings(DataOutputStream out, List<String> strings) throws IOException {
+        out.writeInt(strings.size());
+        for (String string : strings) {
+            out.writeUTF(string);
+        }
+    }
+
+    private static List<String> readStrings(DataInputStream in, SymbolPool symbols) throws IOException {
+        int size = in.readInt();
+        List<String> strings = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            strings.add(symbols.intern(in.readUTF()));
+        }
+        return strings;
+    }
+
+    /**
+     * @return False when entries are neither read nor written, so that no key needs to be computed.
+     */
+    boolean isEnabled() {
+        return true;
+    }
+
+    abstract boolean contains(String key);
+
+    @CheckForNull
+    abstract byte[] read(String key);
+
+    abstract void write(String key, byte[] entry);
+
+    /**
+     * Carries an entry read from the previous analysis over to the next one.
+     */
+    abstract void keep(String key);
+
+    private static final class DisabledAnalysisCache extends AnalysisCache {
+        private static final DisabledAnalysisCache INSTANCE = new DisabledAnalysisCache();
+
+        @Override
+        boolean isEnabled() {
+            return false;
+        }
+
+        @Override
+        boolean contains(String key) {
+            return false;
+        }
+
+        @CheckForNull
+        @Override
+        byte[] read(String key) {
+            return null;
+        }
+
+        @Override
+        void write(String key, byte[] entry) {
+            // Nothing is kept between analyses
+        }
+
+        @Override
+        void keep(String key) {
+            // Nothing is kept between analyses
+        }
+    }
+}
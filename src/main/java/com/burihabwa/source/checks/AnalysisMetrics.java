@@ -0,0 +1,207 @@
+/*
+ * Copyright (C) 2023 Dorian Burihabwa
+ * This code is released under [MIT No Attribution](https://opensource.org/licenses/MIT-0) license.
+ */
+package com.burihabwa.source.checks;
+
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Where {@link GraphDependencyRule} spends its time during an analysis.
+ * <p>
+ * Files may be recorded from concurrent threads. Durations and sizes go into histograms with power of two buckets,
+ * so that recording is a few atomic increments and memory does not grow with the number of files. Only the slowest
+ * files are kept by name.
+ */
+class AnalysisMetrics {
+    static final int SLOWEST_FILES = 10;
+    private static final Comparator<TimedFile> BY_DURATION = Comparator.comparingLong(file -> file.nanos);
+
+    private final Histogram visitMicros = new Histogram();
+    private final Histogram treeVisitMicros = new Histogram();
+    private final Histogram importExtractionMicros = new Histogram();
+    private final Histogram classesPerFile = new Histogram();
+    private final Histogram importsPerFile = new Histogram();
+    private final LongAdder cachedFiles = new LongAdder();
+    /**
+     * Min-heap of the slowest files seen so far.
+     */
+    private final PriorityQueue<TimedFile> slowestFiles = new PriorityQueue<>(SLOWEST_FILES + 1, BY_DURATION);
+    private volatile long collectedFiles;
+    private volatile long serializationNanos;
+    private volatile long bytesWritten;
+
+    /**
+     * Durations of the phases of the extraction of a single file, filled by {@link SourceFileExtractor}.
+     */
+    static final class Sample {
+        long treeVisitNanos;
+        long importExtractionNanos;
+    }
+
+    void recordFile(Path path, long visitNanos, Sample sample, int classes, int imports) {
+        visitMicros.record(visitNanos / 1_000);
+        treeVisitMicros.record(sample.treeVisitNanos / 1_000);
+        importExtractionMicros.record(sample.importExtractionNanos / 1_000);
+        classesPerFile.record(classes);
+        importsPerFile.record(imports);
+        synchronized (slowestFiles) {
+            if (slowestFiles.size() < SLOWEST_FILES || slowestFiles.peek().nanos < visitNanos) {
+                slowestFiles.add(new TimedFile(path, visitNanos));
+                if (slowestFiles.size() > SLOWEST_FILES) {
+                    slowestFiles.poll();
+                }
+            }
+        }
+    }
+
+    void recordCachedFile() {
+        cachedFiles.increment();
+    }
+
+    /**
+     * @param collectedFiles Number of source files held by the rule when the graph is built, parsed and cached ones.
+     */
+    void recordEndOfAnalysis(long collectedFiles, long serializationNanos, long bytesWritten) {
+        this.collectedFiles = collectedFiles;
+        this.serializationNanos = serializationNanos;
+        this.bytesWritten = bytesWritten;
+    }
+
+    /**
+     * @return The paths of the slowest files, slowest first.
+     */
+    List<Path> slowestFiles() {
+        List<Path> paths = new ArrayList<>(SLOWEST_FILES);
+        for (TimedFile file : sortedSlowestFiles()) {
+            paths.add(file.path);
+        }
+        return paths;
+    }
+
+    private List<TimedFile> sortedSlowestFiles() {
+        List<TimedFile> files;
+        synchronized (slowestFiles) {
+            files = new ArrayList<>(slowestFiles);
+        }
+        files.sort(BY_DURATION.reversed());
+        return files;
+    }
+
+    void write(Path path) throws IOException {
+        try (Writer writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
+            write(writer);
+        }
+    }
+
+    void write(Writer out) throws IOException {
+        JsonWriter writer = new JsonWriter(out);
+        writer.setHtmlSafe(true);
+        writer.beginObject();
+        writer.name("files");
+        writer.beginObject();
+        writer.name("parsed").value(visitMicros.count());
+        writer.name("cached").value(cachedFiles.sum());
+        writer.name("collected").value(collectedFiles);
+        writer.endObject();
+        writer.name("visitNodeMicros");
+        visitMicros.write(writer);
+        writer.name("treeVisitMicros");
+        treeVisitMicros.write(writer);
+        writer.name("importExtractionMicros");
+        importExtractionMicros.write(writer);
+        writer.name("classesPerFile");
+        classesPerFile.write(writer);
+        writer.name("importsPerFile");
+        importsPerFile.write(writer);
+        writer.name("endOfAnalysis");
+        writer.beginObject();
+        writer.name("serializationMillis").value(serializationNanos / 1_000_000);
+        writer.name("bytesWritten").value(bytesWritten);
+        writer.endObject();
+        writer.name("slowestFiles");
+        writer.beginArray();
+        for (TimedFile file : sortedSlowestFiles()) {
+            writer.beginObject();
+            writer.name("path").value(file.path.toString());
+            writer.name("micros").value(file.nanos / 1_000);
+            writer.endObject();
+        }
+        writer.endArray();
+        writer.endObject();
+        writer.flush();
+    }
+
+    private static final class TimedFile {
+        private final Path path;
+        private final long nanos;
+
+        private TimedFile(Path path, long nanos) {
+            this.path = path;
+            this.nanos = nanos;
+        }
+    }
+
+    /**
+     * Histogram of non-negative values, bucket {@code i} counting the values of {@code i} significant bits:
+     * 0, 1, 2-3, 4-7...
+     */
+    static final class Histogram {
+        private final AtomicLongArray buckets = new AtomicLongArray(Long.SIZE);
+        private final LongAdder count = new LongAdder();
+        private final LongAdder sum = new LongAdder();
+        private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+        void record(long value) {
+            long recorded = Math.max(value, 0);
+            buckets.incrementAndGet(Long.SIZE - Long.numberOfLeadingZeros(recorded));
+            count.increment();
+            sum.add(recorded);
+            max.accumulate(recorded);
+        }
+
+        long count() {
+            return count.sum();
+        }
+
+        long bucket(int index) {
+            return buckets.get(index);
+        }
+
+        /**
+         * Writes the totals and the non-empty buckets, each one with the largest value it holds.
+         */
+        void write(JsonWriter writer) throws IOException {
+            writer.beginObject();
+            writer.name("count").value(count.sum());
+            writer.name("sum").value(sum.sum());
+            writer.name("max").value(max.get());
+            writer.name("buckets");
+            writer.beginArray();
+            for (int i = 0; i < buckets.length(); i++) {
+                long bucketCount = buckets.get(i);
+                if (bucketCount > 0) {
+                    writer.beginObject();
+                    writer.name("upTo").value((1L << i) - 1);
+                    writer.name("count").value(bucketCount);
+                    writer.endObject();
+                }
+            }
+            writer.endArray();
+            writer.endObject();
+        }
+    }
+}
@@ -7,33 +7,78 @@
  */
 package com.burihabwa.source.checks;
 
+import com.burihabwa.source.graph.BuildLayers;
+import com.burihabwa.source.graph.Condensation;
 import com.burihabwa.source.graph.Module;
 import com.burihabwa.source.graph.SourceFile;
+import org.sonar.api.batch.fs.InputFile;
 import org.sonar.check.Rule;
+import org.sonar.check.RuleProperty;
 import org.sonar.plugins.java.api.InputFileScannerContext;
 import org.sonar.plugins.java.api.IssuableSubscriptionVisitor;
+import org.sonar.plugins.java.api.JavaFileScannerContext;
 import org.sonar.plugins.java.api.ModuleScannerContext;
 import org.sonar.plugins.java.api.internal.EndOfAnalysis;
-import org.sonar.plugins.java.api.semantic.Type;
-import org.sonar.plugins.java.api.tree.*;
+import org.sonar.plugins.java.api.tree.CompilationUnitTree;
+import org.sonar.plugins.java.api.tree.Tree;
 
-import java.io.FileOutputStream;
+import javax.annotation.CheckForNull;
 import java.io.IOException;
-import java.io.OutputStream;
-import java.nio.charset.Charset;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.util.*;
-import java.util.stream.Collectors;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 @Rule(key = "file-dependency-graph")
 public class GraphDependencyRule extends IssuableSubscriptionVisitor implements EndOfAnalysis {
-    private static final String FILE_FORMAT = "%s.json";
     private static final String GRAPH_FORMAT = "%s-graph.json";
+    private static final String COMPRESSED_GRAPH_FORMAT = "%s-graph.json.gz";
+    private static final String COMPRESSED_EXTENSION = ".gz";
+    private static final String BINARY_GRAPH_FORMAT = "%s-graph.bin";
+    private static final String CYCLES_FORMAT = "%s-cycles.json";
+    private static final String LAYERS_FORMAT = "%s-layers.json";
+    private static final String METRICS_FORMAT = "%s-metrics.json";
 
     private final Path outputFolder;
-    private final List<SourceFile> files = new ArrayList<>();
+    private final SourceFileCollector files = new SourceFileCollector();
+    /**
+     * Cache keys of the files that missed the cache and are about to be parsed, by input file key.
+     */
+    private final Map<String, String> pendingCacheKeys = new ConcurrentHashMap<>();
+    /**
+     * Files skipped because their entry is in the cache, by input file key. They are added to the graph at the end of
+     * the analysis.
+     */
+    private final Map<String, CachedFile> cachedFiles = new ConcurrentHashMap<>();
+    private volatile AnalysisCache cache;
+    private final AnalysisMetrics metrics = new AnalysisMetrics();
+    /**
+     * Names of the classes and imports of every file, shared across the files until the graph is built.
+     */
+    private final SymbolPool symbols = new SymbolPool();
+    /**
+     * Taken from the module context at the end of the analysis, as no file context is set when every file was cached.
+     */
+    private volatile String moduleKey;
+    /**
+     * Context of the file being scanned by the current thread. The inherited {@code context} field is shared by the
+     * threads scanning files concurrently.
+     */
+    private final ThreadLocal<InputFileScannerContext> fileContext = new ThreadLocal<>();
+
+    @RuleProperty(
+            key = "declarationsOnly",
+            description = "Skip the expressions of method bodies and initializers, only looking for local type declarations in them",
+            defaultValue = "false")
+    boolean declarationsOnly = false;
+
+    @RuleProperty(
+            key = "compressGraph",
+            description = "Write the graph gzip-compressed, to <module>-graph.json.gz",
+            defaultValue = "false")
+    boolean compressGraph = false;
 
     GraphDependencyRule() {
         this.outputFolder = Path.of(".");
@@ -45,7 +90,32 @@ public class GraphDependencyRule extends IssuableSubscriptionVisitor implements
 
     @Override
     public boolean scanWithoutParsing(InputFileScannerContext inputFileScannerContext) {
-        return Files.exists(computePathToFileGraph(inputFileScannerContext));
+        InputFile inputFile = inputFileScannerContext.getInputFile();
+        String key = AnalysisCache.keyOf(inputFile);
+        if (key == null) {
+            return false;
+        }
+        // The entry is decoded now, as a file skipped here is never visited
+        SourceFile sourceFile = readFromCache(getCache(inputFileScannerContext), key, Paths.get(inputFile.path().toString()));
+        if (sourceFile == null) {
+            pendingCacheKeys.put(inputFile.key(), key);
+            return false;
+        }
+        cachedFiles.put(inputFile.key(), new CachedFile(sourceFile, key));
+        metrics.recordCachedFile();
+        return true;
+    }
+
+    /**
+     * @return The source file stored under the key, null when the entry is missing or cannot be decoded.
+     */
+    @CheckForNull
+    private SourceFile readFromCache(AnalysisCache analysisCache, String key, Path path) {
+        if (!analysisCache.contains(key)) {
+            return null;
+        }
+        byte[] entry = analysisCache.read(key);
+        return entry == null ? null : AnalysisCache.decode(path, entry, symbols);
     }
 
     public Path getOutputFolder() {
@@ -57,108 +127,152 @@ public class GraphDependencyRule extends IssuableSubscriptionVisitor implements
         return List.of(Tree.Kind.COMPILATION_UNIT);
     }
 
+    @Override
+    public void setContext(JavaFileScannerContext context) {
+        // Called before the nodes of a file are visited, by scanFile and by the subscription visitors runner alike
+        fileContext.set(context);
+        super.setContext(context);
+    }
+
+    @Override
+    public void leaveFile(JavaFileScannerContext context) {
+        fileContext.remove();
+        super.leaveFile(context);
+    }
+
     @Override
     public void visitNode(Tree tree) {
-        CompilationUnitTree cut = (CompilationUnitTree) tree;
-        CutVisitor visitor = new CutVisitor();
-        tree.accept(visitor);
-        Path path = Paths.get(context.getInputFile().path().toString());
-        List<String> imports = cut.imports().stream()
-                .filter(ImportTree.class::isInstance)
-                .map(clause -> ((ImportTree) clause).qualifiedIdentifier())
-                .map(GraphDependencyRule::concatenate)
-                .collect(Collectors.toList());
-        imports.addAll(visitor.imports);
-        files.add(new SourceFile(path, visitor.classes, imports));
+        long start = System.nanoTime();
+        InputFileScannerContext currentContext = fileContext.get();
+        Path path = Paths.get(currentContext.getInputFile().path().toString());
+        AnalysisMetrics.Sample sample = new AnalysisMetrics.Sample();
+        SourceFile sourceFile = SourceFileExtractor.extract(path, (CompilationUnitTree) tree, declarationsOnly, symbols, sample);
+        files.add(sourceFile);
+        storeInCache(currentContext, sourceFile.classes, sourceFile.imports);
+        metrics.recordFile(path, System.nanoTime() - start, sample, sourceFile.classes.size(), sourceFile.imports.size());
+    }
+
+    private void storeInCache(InputFileScannerContext inputFileContext, List<String> classes, List<String> imports) {
+        InputFile inputFile = inputFileContext.getInputFile();
+        // The file may have been parsed for other rules after being found in the cache
+        cachedFiles.remove(inputFile.key());
+        AnalysisCache analysisCache = getCache(inputFileContext);
+        if (!analysisCache.isEnabled()) {
+            return;
+        }
+        String key = pendingCacheKeys.remove(inputFile.key());
+        if (key == null) {
+            key = AnalysisCache.keyOf(inputFile);
+        }
+        if (key != null) {
+            analysisCache.write(key, AnalysisCache.encode(classes, imports));
+        }
     }
 
 
     @Override
     public void endOfAnalysis(ModuleScannerContext context) {
-        Path path = computePathToModuleGraph();
-        writeFilesToDisk(path, files);
+        String key = context.getModuleKey();
+        moduleKey = key.isEmpty() ? "module" : key;
+        restoreCachedFiles(context);
+        List<SourceFile> sourceFiles = files.drain();
+        long start = System.nanoTime();
+        Module module = new Module(sourceFiles);
+        try {
+            write(module, computePathToModuleGraph());
+            module.writeBinary(computePathToBinaryModuleGraph());
+            Condensation condensation = module.getCondensation();
+            condensation.write(computePathToCycleReport());
+            BuildLayers.of(condensation).write(computePathToLayerReport());
+            long bytesWritten = Files.size(computePathToModuleGraph())
+                    + Files.size(computePathToBinaryModuleGraph())
+                    + Files.size(computePathToCycleReport())
+                    + Files.size(computePathToLayerReport());
+            metrics.recordEndOfAnalysis(sourceFiles.size(), System.nanoTime() - start, bytesWritten);
+            metrics.write(computePathToMetrics());
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
     }
 
+    private void restoreCachedFiles(ModuleScannerContext context) {
+        AnalysisCache analysisCache = getCache(context);
+        for (CachedFile cachedFile : cachedFiles.values()) {
+            files.add(cachedFile.sourceFile);
+            analysisCache.keep(cachedFile.key);
+        }
+        cachedFiles.clear();
+    }
+
+    private AnalysisCache getCache(ModuleScannerContext context) {
+        AnalysisCache analysisCache = cache;
+        if (analysisCache == null) {
+            synchronized (this) {
+                analysisCache = cache;
+                if (analysisCache == null) {
+                    analysisCache = AnalysisCache.of(context);
+                    cache = analysisCache;
+                }
+            }
+        }
+        return analysisCache;
+    }
+
+    /**
+     * Writes the graph of the files, gzip-compressed when the file name ends with {@code .gz}.
+     */
     public static Path writeFilesToDisk(Path path, List<SourceFile> files) {
-        try (
-                OutputStream out = new FileOutputStream(path.toFile());
-        ) {
-            var moduleGraph = new Module(files).toString();
-            out.write(moduleGraph.getBytes(Charset.defaultCharset()));
+        try {
+            write(new Module(files), path);
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
         return path;
     }
 
-    private static String concatenate(Tree tree) {
-        Deque<String> pieces = new LinkedList<>();
-        Tree expr = tree;
-        while (expr.is(Tree.Kind.MEMBER_SELECT)) {
-            MemberSelectExpressionTree mse = (MemberSelectExpressionTree) expr;
-            pieces.push(mse.identifier().name());
-            pieces.push(".");
-            expr = mse.expression();
-        }
-        if (expr.is(Tree.Kind.IDENTIFIER)) {
-            IdentifierTree idt = (IdentifierTree) expr;
-            pieces.push(idt.name());
+    private static void write(Module module, Path path) throws IOException {
+        if (path.getFileName().toString().endsWith(COMPRESSED_EXTENSION)) {
+            module.writeCompressed(path);
+        } else {
+            module.write(path);
         }
+    }
+
+    private static class CachedFile {
+        private final SourceFile sourceFile;
+        private final String key;
 
-        StringBuilder sb = new StringBuilder();
-        for (String piece : pieces) {
-            sb.append(piece);
+        private CachedFile(SourceFile sourceFile, String key) {
+            this.sourceFile = sourceFile;
+            this.key = key;
         }
-        return sb.toString().replace('$', '.');
     }
 
-    private static class CutVisitor extends BaseTreeVisitor {
-        private final List<String> classes = new ArrayList<>();
-        private final List<String> imports = new ArrayList<>();
+    public Path computePathToModuleGraph() {
+        return outputFolder.resolve(String.format(compressGraph ? COMPRESSED_GRAPH_FORMAT : GRAPH_FORMAT, moduleKey()));
+    }
 
-        @Override
-        public void visitClass(ClassTree tree) {
-            Type type = tree.symbol().type();
-            String fqdn = type.fullyQualifiedName();
-            classes.add(fqdn);
-            Type superClass = tree.symbol().superClass();
-            if (superClass != null) {
-                convertSuperType(type, superClass).ifPresent(imports::add);
-            }
-            tree.superInterfaces().stream()
-                    .map(TypeTree::symbolType)
-                    .map(implementedType -> convertSuperType(type, implementedType))
-                    .map(Optional::get)
-                    .forEach(imports::add);
+    public Path computePathToBinaryModuleGraph() {
+        return outputFolder.resolve(String.format(BINARY_GRAPH_FORMAT, moduleKey()));
+    }
 
-            super.visitClass(tree);
-        }
+    public Path computePathToCycleReport() {
+        return outputFolder.resolve(String.format(CYCLES_FORMAT, moduleKey()));
+    }
 
-        private static Optional<String> convertSuperType(Type type, Type superClass) {
-            String fqdn = type.fullyQualifiedName();
-            if (superClass.isUnknown()) {
-                String packageName = fqdn.substring(0, fqdn.length() - type.name().length());
-                return Optional.of(packageName + superClass.name());
-            } else {
-                String qualifiedName = superClass.fullyQualifiedName();
-                if (!qualifiedName.startsWith("java.") && !qualifiedName.startsWith("javax.")) {
-                    return Optional.of(qualifiedName);
-                }
-            }
-            return Optional.empty();
-        }
+    public Path computePathToLayerReport() {
+        return outputFolder.resolve(String.format(LAYERS_FORMAT, moduleKey()));
     }
 
-    private static Path computePathToFileGraph(InputFileScannerContext inputFileScannerContext) {
-        String key = String.format(FILE_FORMAT, inputFileScannerContext.getInputFile().key());
-        return Path.of(key);
+    public Path computePathToMetrics() {
+        return outputFolder.resolve(String.format(METRICS_FORMAT, moduleKey()));
     }
 
-    public Path computePathToModuleGraph() {
-        String moduleKey = context.getModuleKey();
-        if (moduleKey.isEmpty()) {
-            moduleKey = "module";
+    private String moduleKey() {
+        String key = moduleKey;
+        if (key == null) {
+            throw new IllegalStateException("The module key is only known once the analysis is over.");
         }
-        return outputFolder.resolve(String.format(GRAPH_FORMAT, moduleKey));
+        return key;
     }
 }
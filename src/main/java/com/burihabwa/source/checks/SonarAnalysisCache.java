@@ -0,0 +1,49 @@
+/*
+ * Copyright (C) 2023 Dorian Burihabwa
+ * This code is released under [MIT No Attribution](https://opensource.org/licenses/MIT-0) license.
+ */
+package com.burihabwa.source.checks;
+
+import org.sonar.plugins.java.api.caching.CacheContext;
+
+import javax.annotation.CheckForNull;
+
+/**
+ * {@link AnalysisCache} stored in the analysis cache provided by the SonarQube runtime.
+ */
+class SonarAnalysisCache extends AnalysisCache {
+    private final CacheContext cacheContext;
+
+    SonarAnalysisCache(CacheContext cacheContext) {
+        this.cacheContext = cacheContext;
+    }
+
+    @Override
+    boolean contains(String key) {
+        return cacheContext.getReadCache().contains(key);
+    }
+
+    @CheckForNull
+    @Override
+    byte[] read(String key) {
+        return cacheContext.getReadCache().readBytes(key);
+    }
+
+    @Override
+    void write(String key, byte[] entry) {
+        try {
+            cacheContext.getWriteCache().write(key, entry);
+        } catch (IllegalArgumentException e) {
+            // The entry has already been written during this analysis
+        }
+    }
+
+    @Override
+    void keep(String key) {
+        try {
+            cacheContext.getWriteCache().copyFromPrevious(key);
+        } catch (IllegalArgumentException e) {
+            // The entry has already been written during this analysis
+        }
+    }
+}
@@ -0,0 +1,48 @@
+/*
+ * Copyright (C) 2023 Dorian Burihabwa
+ * This code is released under [MIT No Attribution](https://opensource.org/licenses/MIT-0) license.
+ */
+package com.burihabwa.source.checks;
+
+import com.burihabwa.source.graph.SourceFile;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Collects the source files extracted by concurrent threads without contention.
+ * <p>
+ * Each thread appends to its own buffer; buffers are only merged, and sorted by path so that the result does not
+ * depend on the way files were spread over threads, once every thread is done.
+ */
+class SourceFileCollector {
+    private static final Comparator<SourceFile> BY_PATH = Comparator.comparing(sourceFile -> sourceFile.path.toString());
+
+    private final Queue<List<SourceFile>> buffers = new ConcurrentLinkedQueue<>();
+    private final ThreadLocal<List<SourceFile>> buffer = ThreadLocal.withInitial(() -> {
+        List<SourceFile> threadBuffer = new ArrayList<>();
+        buffers.add(threadBuffer);
+        return threadBuffer;
+    });
+
+    void add(SourceFile sourceFile) {
+        buffer.get().add(sourceFile);
+    }
+
+    /**
+     * Returns every collected source file sorted by path and resets the collector.
+     * Must only be called once the threads that added source files are done.
+     */
+    List<SourceFile> drain() {
+        List<SourceFile> sourceFiles = new ArrayList<>();
+        for (List<SourceFile> threadBuffer : buffers) {
+            sourceFiles.addAll(threadBuffer);
+            threadBuffer.clear();
+        }
+        sourceFiles.sort(BY_PATH);
+        return sourceFiles;
+    }
+}
@@ -0,0 +1,245 @@
+/*
+ * Copyright (C) 2023 Dorian Burihabwa
+ * This code is released under [MIT No Attribution](https://opensource.org/licenses/MIT-0) license.
+ */
+package com.burihabwa.source.checks;
+
+import com.burihabwa.source.graph.SourceFile;
+import org.sonar.plugins.java.api.semantic.Type;
+import org.sonar.plugins.java.api.tree.*;
+
+import java.nio.file.Path;
+import java.util.*;
+
+/**
+ * Extracts the declared classes and the imported types of a compilation unit.
+ * Shared by {@link GraphDependencyRule} and the standalone analyzers working outside of a SonarQube analysis.
+ */
+public final class SourceFileExtractor {
+    private SourceFileExtractor() {
+    }
+
+    public static SourceFile extract(Path path, CompilationUnitTree cut) {
+        return extract(path, cut, false);
+    }
+
+    /**
+     * @param declarationsOnly When true, method bodies and initializers are only searched for local type declarations:
+     *                         expressions, including lambdas and anonymous classes, are not visited.
+     */
+    public static SourceFile extract(Path path, CompilationUnitTree cut, boolean declarationsOnly) {
+        return extract(path, cut, declarationsOnly, new SymbolPool());
+    }
+
+    /**
+     * Same as {@link #extract(Path, CompilationUnitTree, boolean)}, the names of the classes and imports being taken
+     * from {@code symbols}. Analyses extracting many files should share a pool between them.
+     */
+    public static SourceFile extract(Path path, CompilationUnitTree cut, boolean declarationsOnly, SymbolPool symbols) {
+        return extract(path, cut, declarationsOnly, symbols, new AnalysisMetrics.Sample());
+    }
+
+    /**
+     * Same as {@link #extract(Path, CompilationUnitTree, boolean, SymbolPool)}, timing the tree visit and the import
+     * extraction into {@code sample}.
+     */
+    static SourceFile extract(Path path, CompilationUnitTree cut, boolean declarationsOnly, SymbolPool symbols,
+                              AnalysisMetrics.Sample sample) {
+        long start = System.nanoTime();
+        List<ImportClauseTree> clauses = cut.imports();
+        List<String> imports = new ArrayList<>(clauses.size());
+        Map<String, String> importedTypes = new HashMap<>();
+        NameBuilder names = new NameBuilder(symbols);
+        for (ImportClauseTree clause : clauses) {
+            if (clause instanceof ImportTree) {
+                ImportTree importTree = (ImportTree) clause;
+                String name = names.concatenate(importTree.qualifiedIdentifier());
+                imports.add(name);
+                if (!importTree.isStatic()) {
+                    importedTypes.putIfAbsent(name.substring(name.lastIndexOf('.') + 1), name);
+                }
+            }
+        }
+        PackageDeclarationTree packageDeclaration = cut.packageDeclaration();
+        String packagePrefix = packageDeclaration == null ? "" : names.concatenate(packageDeclaration.packageName()) + ".";
+        long extracted = System.nanoTime();
+        CutVisitor visitor = declarationsOnly
+                ? new DeclarationVisitor(symbols, packagePrefix, importedTypes)
+                : new CutVisitor(symbols, packagePrefix, importedTypes);
+        cut.accept(visitor);
+        imports.addAll(visitor.imports);
+        sample.importExtractionNanos = extracted - start;
+        sample.treeVisitNanos = System.nanoTime() - extracted;
+        return new SourceFile(path, visitor.classes, imports);
+    }
+
+    /**
+     * Writes qualified identifiers into a buffer reused across the imports of a file, from the last identifier to the
+     * first one, and looks the result up in the pool. Known names cost no allocation.
+     */
+    static final class NameBuilder {
+        private final SymbolPool symbols;
+        private char[] buffer = new char[64];
+
+        NameBuilder(SymbolPool symbols) {
+            this.symbols = symbols;
+        }
+
+        /**
+         * @return The dotted name of a chain of member selects, {@code $} being replaced by {@code .}.
+         */
+        String concatenate(Tree tree) {
+            int length = 0;
+            Tree expr = tree;
+            while (expr.is(Tree.Kind.MEMBER_SELECT)) {
+                MemberSelectExpressionTree mse = (MemberSelectExpressionTree) expr;
+                length += mse.identifier().name().length() + 1;
+                expr = mse.expression();
+            }
+            if (expr.is(Tree.Kind.IDENTIFIER)) {
+                length += ((IdentifierTree) expr).name().length();
+            }
+            if (buffer.length < length) {
+                buffer = new char[Math.max(length, buffer.length * 2)];
+            }
+            int end = length;
+            expr = tree;
+            while (expr.is(Tree.Kind.MEMBER_SELECT)) {
+                MemberSelectExpressionTree mse = (MemberSelectExpressionTree) expr;
+                end = write(mse.identifier().name(), end);
+                buffer[--end] = '.';
+                expr = mse.expression();
+            }
+            if (expr.is(Tree.Kind.IDENTIFIER)) {
+                write(((IdentifierTree) expr).name(), end);
+            }
+            return symbols.intern(buffer, length);
+        }
+
+        private int write(String identifier, int end) {
+            int start = end - identifier.length();
+            identifier.getChars(0, identifier.length(), buffer, start);
+            for (int i = start; i < end; i++) {
+                if (buffer[i] == '$') {
+                    buffer[i] = '.';
+                }
+            }
+            return start;
+        }
+    }
+
+    private static class CutVisitor extends BaseTreeVisitor {
+        private final SymbolPool symbols;
+        private final String packagePrefix;
+        private final Map<String, String> importedTypes;
+        private final List<String> classes = new ArrayList<>();
+        private final List<String> imports = new ArrayList<>();
+
+        private CutVisitor(SymbolPool symbols, String packagePrefix, Map<String, String> importedTypes) {
+            this.symbols = symbols;
+            this.packagePrefix = packagePrefix;
+            this.importedTypes = importedTypes;
+        }
+
+        @Override
+        public void visitClass(ClassTree tree) {
+            Type type = tree.symbol().type();
+            String fqdn = type.fullyQualifiedName();
+            classes.add(symbols.intern(fqdn));
+            Type superClass = tree.symbol().superClass();
+            if (superClass != null) {
+                convertSuperType(superClass).map(symbols::intern).ifPresent(imports::add);
+            }
+            tree.superInterfaces().stream()
+                    .map(TypeTree::symbolType)
+                    .map(this::convertSuperType)
+                    .flatMap(Optional::stream)
+                    .map(symbols::intern)
+                    .forEach(imports::add);
+
+            super.visitClass(tree);
+        }
+
+        /**
+         * Unknown super types are looked up in the imports of the file, then assumed to be in its package.
+         */
+        private Optional<String> convertSuperType(Type superClass) {
+            if (superClass.isUnknown()) {
+                String name = superClass.name();
+                return Optional.of(importedTypes.getOrDefault(name, packagePrefix + name));
+            } else {
+                String qualifiedName = superClass.fullyQualifiedName();
+                if (!qualifiedName.startsWith("java.") && !qualifiedName.startsWith("javax.")) {
+                    return Optional.of(qualifiedName);
+                }
+            }
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Only descends into the statements that can hold type declarations.
+     */
+    private static class DeclarationVisitor extends CutVisitor {
+        private DeclarationVisitor(SymbolPool symbols, String packagePrefix, Map<String, String> importedTypes) {
+            super(symbols, packagePrefix, importedTypes);
+        }
+
+        @Override
+        public void visitMethod(MethodTree tree) {
+            BlockTree block = tree.block();
+            if (block != null) {
+                scanStatements(block.body());
+            }
+        }
+
+        @Override
+        public void visitBlock(BlockTree tree) {
+            scanStatements(tree.body());
+        }
+
+        @Override
+        public void visitVariable(VariableTree tree) {
+            // Initializers do not declare named types
+        }
+
+        private void scanStatements(List<? extends Tree> statements) {
+            for (Tree statement : statements) {
+                scanStatement(statement);
+            }
+        }
+
+        private void scanStatement(Tree statement) {
+            if (statement == null) {
+                return;
+            }
+            if (statement instanceof ClassTree) {
+                visitClass((ClassTree) statement);
+            } else if (statement instanceof BlockTree) {
+                scanStatements(((BlockTree) statement).body());
+            } else if (statement instanceof IfStatementTree) {
+                scanStatement(((IfStatementTree) statement).thenStatement());
+                scanStatement(((IfStatementTree) statement).elseStatement());
+            } else if (statement instanceof ForStatementTree) {
+                scanStatement(((ForStatementTree) statement).statement());
+            } else if (statement instanceof ForEachStatement) {
+                scanStatement(((ForEachStatement) statement).statement());
+            } else if (statement instanceof WhileStatementTree) {
+                scanStatement(((WhileStatementTree) statement).statement());
+            } else if (statement instanceof DoWhileStatementTree) {
+                scanStatement(((DoWhileStatementTree) statement).statement());
+            } else if (statement instanceof LabeledStatementTree) {
+                scanStatement(((LabeledStatementTree) statement).statement());
+            } else if (statement instanceof SynchronizedStatementTree) {
+                scanStatement(((SynchronizedStatementTree) statement).block());
+            } else if (statement instanceof TryStatementTree) {
+                TryStatementTree tryStatement = (TryStatementTree) statement;
+                scanStatement(tryStatement.block());
+                tryStatement.catches().forEach(catchTree -> scanStatement(catchTree.block()));
+                scanStatement(tryStatement.finallyBlock());
+            } else if (statement instanceof SwitchStatementTree) {
+                ((SwitchStatementTree) statement).cases().forEach(caseGroup -> scanStatements(caseGroup.body()));
+            }
+        }
+    }
+}
@@ -0,0 +1,131 @@
+/*
+ * Copyright (C) 2023 Dorian Burihabwa
+ * This code is released under [MIT No Attribution](https://opensource.org/licenses/MIT-0) license.
+ */
+package com.burihabwa.source.checks;
+
+/**
+ * Pool of the fully qualified names met during an analysis, so that the files importing a class share a single
+ * {@code String} instead of each holding a copy until the graph is built.
+ * <p>
+ * Names can be looked up from the characters they are being built in, a {@code String} only being allocated the first
+ * time a name is met. The pool is shared by the threads of an analysis: it is split in stripes picked by hash, each
+ * one an open-addressing table guarded by its own lock.
+ * <p>
+ * Names are never evicted: a pool is meant to live as long as a single analysis, not as long as a process rebuilding
+ * graphs over and over.
+ */
+public final class SymbolPool {
+    private static final int STRIPES = 16;
+
+    private final Stripe[] stripes = new Stripe[STRIPES];
+
+    public SymbolPool() {
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new Stripe();
+        }
+    }
+
+    public String intern(String name) {
+        int hash = name.hashCode();
+        return stripeOf(hash).intern(name, hash);
+    }
+
+    /**
+     * @return The pooled name made of the first {@code length} characters of {@code chars}.
+     */
+    public String intern(char[] chars, int length) {
+        // Same hash as String#hashCode, so that both lookups find the same entries
+        int hash = 0;
+        for (int i = 0; i < length; i++) {
+            hash = 31 * hash + chars[i];
+        }
+        return stripeOf(hash).intern(chars, length, hash);
+    }
+
+    public int size() {
+        int size = 0;
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                size += stripe.size;
+            }
+        }
+        return size;
+    }
+
+    private Stripe stripeOf(int hash) {
+        return stripes[spread(hash) & (STRIPES - 1)];
+    }
+
+    private static int spread(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+
+    private static final class Stripe {
+        private String[] names = new String[16];
+        private int size;
+
+        synchronized String intern(String name, int hash) {
+            int slot = slotOf(hash);
+            while (names[slot] != null) {
+                if (names[slot].equals(name)) {
+                    return names[slot];
+                }
+                slot = (slot + 1) & (names.length - 1);
+            }
+            add(slot, name);
+            return name;
+        }
+
+        synchronized String intern(char[] chars, int length, int hash) {
+            int slot = slotOf(hash);
+            while (names[slot] != null) {
+                if (contentEquals(names[slot], chars, length)) {
+                    return names[slot];
+                }
+                slot = (slot + 1) & (names.length - 1);
+            }
+            String name = new String(chars, 0, length);
+            add(slot, name);
+            return name;
+        }
+
+        private int slotOf(int hash) {
+            // The low bits picked the stripe
+            return (spread(hash) >>> 4) & (names.length - 1);
+        }
+
+        private void add(int slot, String name) {
+            names[slot] = name;
+            if (++size * 2 > names.length) {
+                rehash();
+            }
+        }
+
+        private void rehash() {
+            String[] previous = names;
+            names = new String[previous.length * 2];
+            for (String name : previous) {
+                if (name != null) {
+                    int slot = slotOf(name.hashCode());
+                    while (names[slot] != null) {
+                        slot = (slot + 1) & (names.length - 1);
+                    }
+                    names[slot] = name;
+                }
+            }
+        }
+
+        private static boolean contentEquals(String name, char[] chars, int length) {
+            if (name.length() != length) {
+                return false;
+            }
+            for (int i = 0; i < length; i++) {
+                if (name.charAt(i) != chars[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
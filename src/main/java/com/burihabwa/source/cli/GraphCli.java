@@ -0,0 +1,431 @@
+/*
+ * Copyright (C) 2023 Dorian Burihabwa
+ * This code is released under [MIT No Attribution](https://opensource.org/licenses/MIT-0) license.
+ */
+package com.burihabwa.source.cli;
+
+import com.burihabwa.source.checks.SourceFileExtractor;
+import com.burihabwa.source.checks.SymbolPool;
+import com.burihabwa.source.graph.BuildLayers;
+import com.burihabwa.source.graph.Condensation;
+import com.burihabwa.source.graph.Module;
+import com.burihabwa.source.graph.ModuleDiff;
+import com.burihabwa.source.graph.ModuleMerger;
+import com.burihabwa.source.graph.ShardedModule;
+import com.burihabwa.source.graph.SourceFile;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Builds the graph of a source tree without running a SonarQube analysis.
+ * <p>
+ * Files are parsed with the sonar-java frontend on a pool of threads and go through the same extraction as
+ * {@code GraphDependencyRule}. The module is written as {@code <module>-graph.json}, or {@code <module>-graph.json.gz}
+ * with {@code --compress}, and {@code <module>-graph.bin} with the source files sorted by path, next to the
+ * {@code <module>-cycles.json} and {@code <module>-layers.json} reports, and as a {@link ShardedModule} in
+ * {@code <module>-shards} with {@code --shards}. Paths are recorded as found under the source roots given on the command line, so absolute roots give
+ * absolute paths, as in a SonarQube analysis. With {@code --watch}, the files are then rewritten by a
+ * {@link GraphWatcher} as the source files change.
+ * <p>
+ * The {@code merge} command writes the same files for a whole project, from the module graphs written by earlier
+ * analyses. Their files are listed module after module and imports are resolved across modules. The {@code diff}
+ * command prints the {@link ModuleDiff} between two graph files. The {@code serve} command answers queries over graph
+ * files from a {@link GraphServer} until the process is stopped.
+ */
+public final class GraphCli {
+    static final String MERGE_COMMAND = "merge";
+    static final String DIFF_COMMAND = "diff";
+    static final String SERVE_COMMAND = "serve";
+    static final long RELOAD_INTERVAL_MILLIS = 1_000;
+    static final long WATCH_DEBOUNCE_MILLIS = 300;
+    static final String USAGE = String.join(System.lineSeparator(),
+            "Usage: GraphCli [options] <source root>...",
+            "       GraphCli merge [options] <graph file or directory>...",
+            "       GraphCli diff <graph file> <graph file>",
+            "       GraphCli serve [--port <port>] [--parallelism <threads>] <graph file>...",
+            "  --output <directory>     directory the graph is written to (default: .)",
+            "  --module <key>           module key used to name the graph files (default: module)",
+            "  --parallelism <threads>  number of files parsed concurrently (default: number of processors)",
+            "  --classpath <path>       classpath used to resolve types, with the platform path separator",
+            "  --encoding <charset>     encoding of the source files (default: UTF-8)",
+            "  --declarations-only      skip method bodies and initializers except for local type declarations",
+            "  --compress               write the JSON graph gzip-compressed, as <module>-graph.json.gz",
+            "  --shards <count>         also write the graph split by package into <count> shards, in <module>-shards",
+            "  --watch                  keep the graph up to date as the source files change, until stopped",
+            "merge combines the module graphs found in its arguments into a single graph, resolving imports across modules.",
+            "diff prints the structural changes from the first graph to the second one as a JSON delta.",
+            "serve answers impact, dependency and path queries on http://127.0.0.1:<port>, reloading graph files as they change."
+    );
+
+    private GraphCli() {
+    }
+
+    public static void main(String[] args) {
+        System.exit(run(args, System.out, System.err));
+    }
+
+    static int run(String[] args, PrintStream out, PrintStream err) {
+        if (args.length > 0 && args[0].equals(DIFF_COMMAND)) {
+            return diff(args, out, err);
+        }
+        if (args.length > 0 && args[0].equals(SERVE_COMMAND)) {
+            return serve(args, out, err);
+        }
+        boolean merge = args.length > 0 && args[0].equals(MERGE_COMMAND);
+        Options options;
+        try {
+            options = Options.parse(merge ? Arrays.copyOfRange(args, 1, args.length) : args);
+        } catch (IllegalArgumentException e) {
+            err.println(e.getMessage());
+            err.println(USAGE);
+            return 2;
+        }
+        if (merge && options.watch) {
+            err.println("Option --watch only applies to source roots.");
+            err.println(USAGE);
+            return 2;
+        }
+        try {
+            long start = System.nanoTime();
+            // Not kept for --watch, see watch()
+            List<SourceFile> sourceFiles = merge ? null : analyze(options, new SymbolPool(), err);
+            Module module = merge
+                    ? ModuleMerger.merge(listGraphFiles(options.roots), options.parallelism)
+                    : new Module(sourceFiles);
+            Path graph = writeGraph(module, options);
+            out.printf("Wrote %d source files to %s in %d ms%n", module.size(), graph, (System.nanoTime() - start) / 1_000_000);
+            if (options.watch) {
+                watch(options, sourceFiles, out, err);
+            }
+            return 0;
+        } catch (IOException e) {
+            err.println("Could not build the graph: " + e.getMessage());
+            return 1;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return 1;
+        }
+    }
+
+    /**
+     * Writes the graph and its reports, each file being replaced at once so that readers such as {@link GraphServer}
+     * never see a file half-written.
+     *
+     * @return The path of the JSON graph.
+     */
+    private static Path writeGraph(Module module, Options options) throws IOException {
+        Files.createDirectories(options.output);
+        Path graph;
+        if (options.compress) {
+            graph = options.output.resolve(options.moduleKey + "-graph.json.gz");
+            module.writeCompressed(graph);
+        } else {
+            graph = options.output.resolve(options.moduleKey + "-graph.json");
+            module.write(graph);
+        }
+        // Graphs are replaced at once by the module itself
+        module.writeBinary(options.output.resolve(options.moduleKey + "-graph.bin"));
+        if (options.shards > 0) {
+            ShardedModule.write(module, options.output.resolve(options.moduleKey + "-shards"), options.shards);
+        }
+        Condensation condensation = module.getCondensation();
+        replace(options.output.resolve(options.moduleKey + "-cycles.json"), condensation::write);
+        BuildLayers layers = BuildLayers.of(condensation);
+        replace(options.output.resolve(options.moduleKey + "-layers.json"), layers::write);
+        return graph;
+    }
+
+    private interface PathWriter {
+        void write(Path path) throws IOException;
+    }
+
+    private static void replace(Path target, PathWriter writer) throws IOException {
+        Path temporary = target.resolveSibling(target.getFileName() + ".tmp");
+        writer.write(temporary);
+        try {
+            Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Rewrites the graph as the Java files under the roots change, until the process is stopped.
+     * <p>
+     * Files are extracted without a shared {@link SymbolPool}: a pool never forgets a name, so sharing one for the life
+     * of the process would keep every class and import ever met alive, including those deleted or renamed since.
+     */
+    private static void watch(Options options, List<SourceFile> sourceFiles, PrintStream out, PrintStream err)
+            throws IOException {
+        JavaFileParser parser = new JavaFileParser(options.classpath, options.roots, options.encoding);
+        ExecutorService executor = Executors.newFixedThreadPool(options.parallelism);
+        try (GraphWatcher watcher = new GraphWatcher(options.roots, sourceFiles,
+                file -> SourceFileExtractor.extract(file, parser.parse(file), options.declarationsOnly),
+                executor, WATCH_DEBOUNCE_MILLIS, err)) {
+            out.println("Watching " + options.roots + " for changes");
+            watcher.run((module, changedPaths) -> {
+                long start = System.nanoTime();
+                Path graph = writeGraph(module, options);
+                out.printf("Updated %s after %d changes in %d ms%n", graph, changedPaths, (System.nanoTime() - start) / 1_000_000);
+            });
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static int diff(String[] args, PrintStream out, PrintStream err) {
+        if (args.length != 3) {
+            err.println("Two graph files are expected.");
+            err.println(USAGE);
+            return 2;
+        }
+        try {
+            ModuleDiff.between(Path.of(args[1]), Path.of(args[2])).write(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+            out.println();
+            return 0;
+        } catch (IOException e) {
+            err.println("Could not compare the graphs: " + e.getMessage());
+            return 1;
+        }
+    }
+
+    private static int serve(String[] args, PrintStream out, PrintStream err) {
+        int port = 0;
+        int threads = Runtime.getRuntime().availableProcessors();
+        List<Path> graphFiles = new ArrayList<>();
+        try {
+            for (int i = 1; i < args.length; i++) {
+                String arg = args[i];
+                if (!arg.startsWith("--")) {
+                    graphFiles.add(Path.of(arg));
+                    continue;
+                }
+                if (i + 1 == args.length) {
+                    throw new IllegalArgumentException(String.format("Missing value for option %s.", arg));
+                }
+                String value = args[++i];
+                switch (arg) {
+                    case "--port":
+                        port = Options.parsePositive(arg, value);
+                        break;
+                    case "--parallelism":
+                        threads = Options.parsePositive(arg, value);
+                        break;
+                    default:
+                        throw new IllegalArgumentException(String.format("Unknown option %s.", arg));
+                }
+            }
+            if (graphFiles.isEmpty()) {
+                throw new IllegalArgumentException("At least one graph file is expected.");
+            }
+        } catch (IllegalArgumentException e) {
+            err.println(e.getMessage());
+            err.println(USAGE);
+            return 2;
+        }
+        // The HTTP server of the JDK writes headers and body separately, so small answers would wait for a delayed ACK
+        // (~40 ms) without TCP_NODELAY. The property is read once for the whole JVM, before the first server is created.
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+        GraphServer server;
+        try {
+            server = new GraphServer(graphFiles, port, threads, RELOAD_INTERVAL_MILLIS, err);
+        } catch (IOException | IllegalArgumentException e) {
+            err.println("Could not serve the graphs: " + e.getMessage());
+            return 1;
+        }
+        Runtime.getRuntime().addShutdownHook(new Thread(server::close));
+        out.printf("Serving %d graphs on http://%s:%d%n", graphFiles.size(),
+                server.address().getHostString(), server.address().getPort());
+        try {
+            Thread.currentThread().join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        server.close();
+        return 0;
+    }
+
+    static List<SourceFile> analyze(Options options, SymbolPool symbols, PrintStream err) throws IOException, InterruptedException {
+        List<Path> files = listJavaFiles(options.roots);
+        JavaFileParser parser = new JavaFileParser(options.classpath, options.roots, options.encoding);
+        ExecutorService executor = Executors.newFixedThreadPool(options.parallelism);
+        try {
+            List<Future<SourceFile>> futures = new ArrayList<>(files.size());
+            for (Path file : files) {
+                futures.add(executor.submit(() -> SourceFileExtractor.extract(file, parser.parse(file), options.declarationsOnly, symbols)));
+            }
+            List<SourceFile> sourceFiles = new ArrayList<>(files.size());
+            for (int i = 0; i < futures.size(); i++) {
+                try {
+                    sourceFiles.add(futures.get(i).get());
+                } catch (ExecutionException e) {
+                    err.printf("Skipping %s: %s%n", files.get(i), e.getCause());
+                }
+            }
+            return sourceFiles;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * @return The Java files found under the roots, sorted by path so that the graph is deterministic.
+     */
+    static List<Path> listJavaFiles(List<Path> roots) throws IOException {
+        List<Path> files = new ArrayList<>();
+        for (Path root : roots) {
+            try (Stream<Path> walk = Files.walk(root)) {
+                files.addAll(walk
+                        .filter(path -> path.toString().endsWith(".java"))
+                        .filter(Files::isRegularFile)
+                        .collect(Collectors.toList()));
+            }
+        }
+        files.sort((first, second) -> first.toString().compareTo(second.toString()));
+        return files;
+    }
+
+    /**
+     * @return The graph files given as arguments and the {@code *-graph.json} and {@code *-graph.json.gz} files found
+     * under the directories given as arguments, sorted by path.
+     */
+    static List<Path> listGraphFiles(List<Path> roots) throws IOException {
+        List<Path> files = new ArrayList<>();
+        for (Path root : roots) {
+            if (!Files.isDirectory(root)) {
+                files.add(root);
+                continue;
+            }
+            try (Stream<Path> walk = Files.walk(root)) {
+                List<Path> found = walk
+                        .filter(path -> path.getFileName().toString().endsWith("-graph.json")
+                                || path.getFileName().toString().endsWith("-graph.json.gz"))
+                        .filter(Files::isRegularFile)
+                        .collect(Collectors.toList());
+                files.addAll(newestPerModule(found));
+            }
+        }
+        files.sort((first, second) -> first.toString().compareTo(second.toString()));
+        return files;
+    }
+
+    /**
+     * Keeps a single graph of a module in a directory, {@code <module>-graph.json} and {@code <module>-graph.json.gz}
+     * being left side by side when {@code --compress} is switched between two analyses. The file last modified wins.
+     */
+    private static Collection<Path> newestPerModule(List<Path> graphFiles) throws IOException {
+        Map<Path, Path> newest = new HashMap<>();
+        for (Path graphFile : graphFiles) {
+            Path module = graphFile.resolveSibling(GraphServer.nameOf(graphFile));
+            Path current = newest.get(module);
+            if (current == null || Files.getLastModifiedTime(graphFile).compareTo(Files.getLastModifiedTime(current)) > 0) {
+                newest.put(module, graphFile);
+            }
+        }
+        return newest.values();
+    }
+
+    static final class Options {
+        Path output = Path.of(".");
+        String moduleKey = "module";
+        int parallelism = Runtime.getRuntime().availableProcessors();
+        List<File> classpath = new ArrayList<>();
+        Charset encoding = StandardCharsets.UTF_8;
+        boolean declarationsOnly = false;
+        boolean watch = false;
+        boolean compress = false;
+        int shards = 0;
+        final List<Path> roots = new ArrayList<>();
+
+        static Options parse(String[] args) {
+            Options options = new Options();
+            for (int i = 0; i < args.length; i++) {
+                String arg = args[i];
+                if (!arg.startsWith("--")) {
+                    options.roots.add(Path.of(arg));
+                    continue;
+                }
+                if (arg.equals("--declarations-only")) {
+                    options.declarationsOnly = true;
+                    continue;
+                }
+                if (arg.equals("--watch")) {
+                    options.watch = true;
+                    continue;
+                }
+                if (arg.equals("--compress")) {
+                    options.compress = true;
+                    continue;
+                }
+                if (i + 1 == args.length) {
+                    throw new IllegalArgumentException(String.format("Missing value for option %s.", arg));
+                }
+                String value = args[++i];
+                switch (arg) {
+                    case "--output":
+                        options.output = Path.of(value);
+                        break;
+                    case "--module":
+                        options.moduleKey = value;
+                        break;
+                    case "--parallelism":
+                        options.parallelism = parsePositive(arg, value);
+                        break;
+                    case "--shards":
+                        options.shards = parsePositive(arg, value);
+                        break;
+                    case "--classpath":
+                        options.classpath = Stream.of(value.split(File.pathSeparator))
+                                .filter(entry -> !entry.isEmpty())
+                                .map(File::new)
+                                .collect(Collectors.toList());
+                        break;
+                    case "--encoding":
+                        options.encoding = Charset.forName(value);
+                        break;
+                    default:
+                        throw new IllegalArgumentException(String.format("Unknown option %s.", arg));
+                }
+            }
+            if (options.roots.isEmpty()) {
+                throw new IllegalArgumentException("At least one source root is expected.");
+            }
+            return options;
+        }
+
+        static int parsePositive(String option, String value) {
+            try {
+                int number = Integer.parseInt(value);
+                if (number > 0) {
+                    return number;
+                }
+            } catch (NumberFormatException e) {
+                // Reported below
+            }
+            throw new IllegalArgumentException(String.format("Option %s expects a positive number (%s).", option, value));
+        }
+    }
+}
@@ -0,0 +1,317 @@
+/*
+ * Copyright (C) 2023 Dorian Burihabwa
+ * This code is released under [MIT No Attribution](https://opensource.org/licenses/MIT-0) license.
+ */
+package com.burihabwa.source.cli;
+
+import com.burihabwa.source.graph.Module;
+import com.burihabwa.source.graph.SourceFile;
+import com.burihabwa.source.graph.UnknownSourceFileException;
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.stream.JsonWriter;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.StringWriter;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Serves impact, dependency and path queries over graphs kept in memory, on a loopback HTTP endpoint.
+ * <p>
+ * Graphs are named after their file, {@code my-module-graph.json} being served as {@code my-module}, and loaded
+ * with {@link Module#map(Path)} when they use the binary format. Every graph file is polled for changes: a new
+ * snapshot is loaded in the background and swapped in once complete, so that a query always sees a whole graph.
+ * A file that cannot be loaded, because it is still being written for instance, leaves the current snapshot in
+ * place until the next poll.
+ * <p>
+ * Endpoints, answering JSON:
+ * <ul>
+ *     <li>{@code GET /modules}</li>
+ *     <li>{@code GET /impact?path=<file>[&depth=<hops>|all][&module=<name>]}: files impacted by a change of a file</li>
+ *     <li>{@code GET /dependencies?path=<file>[&module=<name>]}: files a file imports classes from</li>
+ *     <li>{@code GET /path?from=<file>&to=<file>[&module=<name>]}: shortest chain of imports between two files</li>
+ * </ul>
+ * The module can be left out when a single graph is served.
+ */
+final class GraphServer implements Closeable {
+    private static final String BINARY_EXTENSION = ".bin";
+
+    private final Map<String, ServedGraph> graphs = new LinkedHashMap<>();
+    private final HttpServer server;
+    private final ExecutorService workers;
+    private final ScheduledExecutorService reloader;
+    private final PrintStream err;
+
+    GraphServer(List<Path> graphFiles, int port, int threads, long reloadIntervalMillis, PrintStream err) throws IOException {
+        this.err = err;
+        for (Path graphFile : graphFiles) {
+            ServedGraph graph = new ServedGraph(graphFile);
+            graph.reload();
+            if (graphs.put(graph.name, graph) != null) {
+                throw new IllegalArgumentException(String.format("Graph %s is given more than once (%s).", graph.name, graphFile));
+            }
+        }
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        handle("/modules", this::modules);
+        handle("/impact", this::impact);
+        handle("/dependencies", this::dependencies);
+        handle("/path", this::path);
+        workers = Executors.newFixedThreadPool(threads);
+        server.setExecutor(workers);
+        reloader = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "graph-reloader");
+            thread.setDaemon(true);
+            return thread;
+        });
+        if (reloadIntervalMillis > 0) {
+            reloader.scheduleWithFixedDelay(this::reloadChangedGraphs, reloadIntervalMillis, reloadIntervalMillis, TimeUnit.MILLISECONDS);
+        }
+        server.start();
+    }
+
+    InetSocketAddress address() {
+        return server.getAddress();
+    }
+
+    void handle(String path, Query query) {
+        server.createContext(path, exchange -> respond(exchange, query));
+    }
+
+    /**
+     * Reloads the graphs whose file changed since they were last loaded.
+     */
+    void reloadChangedGraphs() {
+        for (ServedGraph graph : graphs.values()) {
+            try {
+                graph.reloadIfChanged();
+            } catch (IOException | RuntimeException e) {
+                err.printf("Could not reload %s, keeping the current graph: %s%n", graph.file, e.getMessage());
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        reloader.shutdownNow();
+        workers.shutdownNow();
+    }
+
+    private void modules(Map<String, String> parameters, JsonWriter writer) throws IOException {
+        writer.beginObject();
+        writer.name("modules");
+        writer.beginArray();
+        for (ServedGraph graph : graphs.values()) {
+            writer.beginObject();
+            writer.name("name").value(graph.name);
+            writer.name("path").value(graph.file.toString());
+            writer.name("files").value(graph.snapshot.get().module.size());
+            writer.endObject();
+        }
+        writer.endArray();
+        writer.endObject();
+    }
+
+    private void impact(Map<String, String> parameters, JsonWriter writer) throws IOException {
+        Module module = module(parameters);
+        Path changed = Path.of(required(parameters, "path"));
+        String depth = parameters.getOrDefault("depth", "1");
+        List<SourceFile> impacted;
+        if (depth.equals("all")) {
+            impacted = module.getSourceFilesTransitivelyImpactedByChangeOf(changed);
+        } else if (depth.equals("1")) {
+            impacted = module.getSourceFilesImpactedByChangeOf(changed);
+        } else {
+            impacted = module.getSourceFilesTransitivelyImpactedByChangeOf(changed, parseDepth(depth));
+        }
+        writeFiles(writer, impacted);
+    }
+
+    private void dependencies(Map<String, String> parameters, JsonWriter writer) throws IOException {
+        writeFiles(writer, module(parameters).getDependenciesOf(Path.of(required(parameters, "path"))));
+    }
+
+    private void path(Map<String, String> parameters, JsonWriter writer) throws IOException {
+        Module module = module(parameters);
+        writeFiles(writer, module.getDependencyPath(Path.of(required(parameters, "from")), Path.of(required(parameters, "to"))));
+    }
+
+    private Module module(Map<String, String> parameters) {
+        String name = parameters.get("module");
+        if (name == null) {
+            if (graphs.size() != 1) {
+                throw new IllegalArgumentException("Several graphs are served, a module is expected.");
+            }
+            return graphs.values().iterator().next().snapshot.get().module;
+        }
+        ServedGraph graph = graphs.get(name);
+        if (graph == null) {
+            throw new IllegalArgumentException(String.format("Unknown module %s.", name));
+        }
+        return graph.snapshot.get().module;
+    }
+
+    private static String required(Map<String, String> parameters, String name) {
+        String value = parameters.get(name);
+        if (value == null) {
+            throw new IllegalArgumentException(String.format("Missing parameter %s.", name));
+        }
+        return value;
+    }
+
+    private static int parseDepth(String depth) {
+        try {
+            return Integer.parseInt(depth);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(String.format("Depth must be a number or all (%s).", depth));
+        }
+    }
+
+    private static void writeFiles(JsonWriter writer, List<SourceFile> files) throws IOException {
+        writer.beginObject();
+        writer.name("files");
+        writer.beginArray();
+        for (SourceFile file : files) {
+            writer.value(file.path.toString());
+        }
+        writer.endArray();
+        writer.endObject();
+    }
+
+    interface Query {
+        void answer(Map<String, String> parameters, JsonWriter writer) throws IOException;
+    }
+
+    private void respond(HttpExchange exchange, Query query) throws IOException {
+        int status = 200;
+        StringWriter body = new StringWriter();
+        try {
+            if (!exchange.getRequestMethod().equals("GET")) {
+                status = 405;
+                writeError(body, "Only GET requests are supported.");
+            } else {
+                JsonWriter writer = new JsonWriter(body);
+                writer.setHtmlSafe(true);
+                query.answer(parameters(exchange.getRequestURI().getRawQuery()), writer);
+                writer.flush();
+            }
+        } catch (UnknownSourceFileException e) {
+            body = new StringWriter();
+            status = 404;
+            writeError(body, e.getMessage());
+        } catch (IllegalArgumentException e) {
+            body = new StringWriter();
+            status = 400;
+            writeError(body, e.getMessage());
+        } catch (RuntimeException e) {
+            err.printf("Could not answer %s: %s%n", exchange.getRequestURI(), e);
+            body = new StringWriter();
+            status = 500;
+            writeError(body, "The query failed, see the server output.");
+        }
+        byte[] bytes = body.toString().getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private static void writeError(StringWriter body, String message) throws IOException {
+        JsonWriter writer = new JsonWriter(body);
+        writer.setHtmlSafe(true);
+        writer.beginObject();
+        writer.name("error").value(message);
+        writer.endObject();
+        writer.flush();
+    }
+
+    static Map<String, String> parameters(String rawQuery) {
+        Map<String, String> parameters = new HashMap<>();
+        if (rawQuery == null || rawQuery.isEmpty()) {
+            return parameters;
+        }
+        for (String pair : rawQuery.split("&")) {
+            int separator = pair.indexOf('=');
+            String name = separator < 0 ? pair : pair.substring(0, separator);
+            String value = separator < 0 ? "" : pair.substring(separator + 1);
+            parameters.put(URLDecoder.decode(name, StandardCharsets.UTF_8), URLDecoder.decode(value, StandardCharsets.UTF_8));
+        }
+        return parameters;
+    }
+
+    static String nameOf(Path graphFile) {
+        String fileName = graphFile.getFileName().toString();
+        for (String suffix : new String[]{"-graph.json", "-graph.json.gz", "-graph" + BINARY_EXTENSION}) {
+            if (fileName.endsWith(suffix)) {
+                return fileName.substring(0, fileName.length() - suffix.length());
+            }
+        }
+        return fileName;
+    }
+
+    private static final class ServedGraph {
+        private final Path file;
+        private final String name;
+        private final AtomicReference<Snapshot> snapshot = new AtomicReference<>();
+
+        private ServedGraph(Path file) {
+            this.file = file;
+            this.name = nameOf(file);
+        }
+
+        private void reloadIfChanged() throws IOException {
+            Snapshot current = snapshot.get();
+            BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+            if (current.lastModified != attributes.lastModifiedTime().toMillis() || current.size != attributes.size()) {
+                reload();
+            }
+        }
+
+        /**
+         * Loads the file and swaps the snapshot in, the attributes being read first so that a change made during
+         * the load is picked up by the next poll.
+         */
+        private void reload() throws IOException {
+            BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+            Module module;
+            try {
+                module = file.toString().endsWith(BINARY_EXTENSION) ? Module.map(file) : Module.of(file);
+            } catch (JsonSyntaxException e) {
+                throw new IOException(e.getMessage(), e);
+            }
+            snapshot.set(new Snapshot(module, attributes.lastModifiedTime().toMillis(), attributes.size()));
+        }
+    }
+
+    private static final class Snapshot {
+        private final Module module;
+        private final long lastModified;
+        private final long size;
+
+        private Snapshot(Module module, long lastModified, long size) {
+            this.module = module;
+            this.lastModified = lastModified;
+            this.size = size;
+        }
+    }
+}
@@ -0,0 +1,256 @@
+/*
+ * Copyright (C) 2023 Dorian Burihabwa
+ * This code is released under [MIT No Attribution](https://opensource.org/licenses/MIT-0) license.
+ */
+package com.burihabwa.source.cli;
+
+import com.burihabwa.source.graph.Module;
+import com.burihabwa.source.graph.SourceFile;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Keeps the graph of source roots up to date as their Java files are created, modified or deleted.
+ * <p>
+ * The directories under the roots are registered with a {@link WatchService}. Events are gathered until the roots
+ * have been quiet for the debounce delay, so that a burst such as a branch checkout is handled as a single batch.
+ * Events keep arriving in a batch for at most {@link #MAX_DEBOUNCES} delays.
+ * Only the files named by the batch are extracted again, the other source files being kept from the previous
+ * batch, and a new {@link Module} is built from them for the listener. Modules are immutable, building one takes a
+ * fraction of the time needed to parse the files of a large batch.
+ */
+final class GraphWatcher implements Closeable {
+    /**
+     * Extracts the source file of a Java file, as done by {@code GraphDependencyRule}.
+     */
+    interface Extractor {
+        SourceFile extract(Path file) throws IOException;
+    }
+
+    /**
+     * Bound on the length of a batch, in debounce delays, for roots that never get quiet.
+     */
+    static final int MAX_DEBOUNCES = 20;
+
+    private final List<Path> roots;
+    private final Extractor extractor;
+    private final ExecutorService executor;
+    private final long debounceMillis;
+    private final PrintStream err;
+    private final WatchService watchService;
+    private final Map<WatchKey, Path> directories = new HashMap<>();
+    private final Set<Path> registered = new HashSet<>();
+    /**
+     * Source files by path, sorted like {@link GraphCli#listJavaFiles(List)} so that the graph does not depend on
+     * the order of the events.
+     */
+    private final TreeMap<Path, SourceFile> sourceFiles = new TreeMap<>(Comparator.comparing(Path::toString));
+
+    GraphWatcher(List<Path> roots, List<SourceFile> initial, Extractor extractor, ExecutorService executor,
+                 long debounceMillis, PrintStream err) throws IOException {
+        this.roots = roots;
+        this.extractor = extractor;
+        this.executor = executor;
+        this.debounceMillis = debounceMillis;
+        this.err = err;
+        for (SourceFile sourceFile : initial) {
+            sourceFiles.put(sourceFile.path, sourceFile);
+        }
+        watchService = FileSystems.getDefault().newWatchService();
+        for (Path root : roots) {
+            register(root);
+        }
+    }
+
+    /**
+     * Handles batches of events until the thread is interrupted or the watcher closed.
+     *
+     * @param listener Called with the module of every batch that changed a source file.
+     */
+    void run(ModuleListener listener) throws IOException {
+        try {
+            while (true) {
+                Set<Path> changed = new HashSet<>();
+                boolean overflow = collect(watchService.take(), changed);
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(debounceMillis * MAX_DEBOUNCES);
+                WatchKey key;
+                while (System.nanoTime() < deadline
+                        && (key = watchService.poll(debounceMillis, TimeUnit.MILLISECONDS)) != null) {
+                    overflow |= collect(key, changed);
+                }
+                if (overflow) {
+                    changed.addAll(rescan());
+                }
+                Module module = update(changed);
+                if (module != null) {
+                    listener.onUpdate(module, changed.size());
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ClosedWatchServiceException e) {
+            // Closed from another thread
+        }
+    }
+
+    /**
+     * Registers the directories created while events were lost, such as the packages of a branch checkout.
+     *
+     * @return Every path to check again: the known source files and the Java files now under the roots.
+     */
+    Set<Path> rescan() throws IOException {
+        Set<Path> changed = new HashSet<>(sourceFiles.keySet());
+        changed.addAll(GraphCli.listJavaFiles(roots));
+        for (Path root : roots) {
+            changed.addAll(register(root));
+        }
+        return changed;
+    }
+
+    boolean isRegistered(Path directory) {
+        return registered.contains(directory);
+    }
+
+    interface ModuleListener {
+        void onUpdate(Module module, int changedPaths) throws IOException;
+    }
+
+    /**
+     * Extracts the changed Java files again and forgets the ones that are gone. Directories that appeared are
+     * registered, along with the files they already hold.
+     *
+     * @return The updated module, or {@code null} when no source file changed.
+     */
+    Module update(Collection<Path> changed) throws IOException, InterruptedException {
+        Set<Path> toExtract = new HashSet<>();
+        boolean removed = false;
+        for (Path path : changed) {
+            if (Files.isDirectory(path)) {
+                // Changes to the files of a registered directory come with their own events
+                toExtract.addAll(register(path));
+            } else if (Files.isRegularFile(path)) {
+                if (isJavaFile(path)) {
+                    toExtract.add(path);
+                }
+            } else if (isJavaFile(path)) {
+                removed |= sourceFiles.remove(path) != null;
+            } else {
+                removed |= removeUnder(path);
+            }
+        }
+        boolean extracted = false;
+        List<Path> files = new ArrayList<>(toExtract);
+        List<Future<SourceFile>> futures = new ArrayList<>(files.size());
+        for (Path file : files) {
+            futures.add(executor.submit(() -> extractor.extract(file)));
+        }
+        for (int i = 0; i < futures.size(); i++) {
+            try {
+                SourceFile sourceFile = futures.get(i).get();
+                extracted |= !sourceFile.equals(sourceFiles.put(sourceFile.path, sourceFile));
+            } catch (ExecutionException e) {
+                // Most likely a file saved half-way, the next event will bring it back
+                err.printf("Skipping %s: %s%n", files.get(i), e.getCause());
+                removed |= sourceFiles.remove(files.get(i)) != null;
+            }
+        }
+        return extracted || removed ? module() : null;
+    }
+
+    Module module() {
+        return new Module(new ArrayList<>(sourceFiles.values()));
+    }
+
+    @Override
+    public void close() throws IOException {
+        watchService.close();
+    }
+
+    private boolean collect(WatchKey key, Set<Path> changed) {
+        Path directory = directories.get(key);
+        boolean overflow = false;
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                overflow = true;
+            } else if (directory != null) {
+                changed.add(directory.resolve((Path) event.context()));
+            }
+        }
+        if (!key.reset()) {
+            registered.remove(directories.remove(key));
+        }
+        return overflow;
+    }
+
+    /**
+     * Registers the directories of a tree that are not registered yet. The whole tree is walked, even when its top
+     * directory is known, as subdirectories may have been created without their events being seen.
+     *
+     * @return The Java files found in the newly registered directories.
+     */
+    private List<Path> register(Path directory) throws IOException {
+        List<Path> javaFiles = new ArrayList<>();
+        Set<Path> newlyRegistered = new HashSet<>();
+        try (Stream<Path> walk = Files.walk(directory)) {
+            for (Path path : walk.collect(Collectors.toList())) {
+                if (Files.isDirectory(path)) {
+                    if (registered.add(path)) {
+                        newlyRegistered.add(path);
+                        directories.put(path.register(watchService,
+                                StandardWatchEventKinds.ENTRY_CREATE,
+                                StandardWatchEventKinds.ENTRY_MODIFY,
+                                StandardWatchEventKinds.ENTRY_DELETE), path);
+                    }
+                } else if (isJavaFile(path) && Files.isRegularFile(path) && newlyRegistered.contains(path.getParent())) {
+                    javaFiles.add(path);
+                }
+            }
+        }
+        return javaFiles;
+    }
+
+    /**
+     * Forgets the source files under a deleted directory.
+     */
+    private boolean removeUnder(Path directory) {
+        boolean removed = false;
+        Iterator<Path> known = sourceFiles.keySet().iterator();
+        while (known.hasNext()) {
+            if (known.next().startsWith(directory)) {
+                known.remove();
+                removed = true;
+            }
+        }
+        return removed;
+    }
+
+    private static boolean isJavaFile(Path path) {
+        return path.getFileName() != null && path.getFileName().toString().endsWith(".java");
+    }
+}
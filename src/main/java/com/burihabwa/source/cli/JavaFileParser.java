@@ -0,0 +1,60 @@
+/*
+ * Copyright (C) 2023 Dorian Burihabwa
+ * This code is released under [MIT No Attribution](https://opensource.org/licenses/MIT-0) license.
+ */
+package com.burihabwa.source.cli;
+
+import org.eclipse.jdt.core.dom.ASTParser;
+import org.sonar.java.model.JParser;
+import org.sonar.java.model.JParserConfig;
+import org.sonar.java.model.JavaVersionImpl;
+import org.sonar.plugins.java.api.JavaVersion;
+import org.sonar.plugins.java.api.tree.CompilationUnitTree;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Parses Java files one by one with the sonar-java frontend, outside of a SonarQube analysis.
+ * A single instance can be shared between threads as every file gets its own parser.
+ * <p>
+ * The source roots are given to the parser next to the classpath, so that the types a file uses from the other files
+ * of the tree are resolved as in a SonarQube analysis. Without them, a super type declared in another package would be
+ * unknown and taken for a type of the package of the file.
+ */
+final class JavaFileParser {
+    private final JParserConfig config;
+    private final String version;
+    private final Charset charset;
+    private final String[] classpath;
+    private final String[] sourcepath;
+    private final String[] encodings;
+    private final boolean includeRunningVMBootclasspath;
+
+    JavaFileParser(List<File> classpath, List<Path> sourceRoots, Charset charset) {
+        JavaVersion javaVersion = new JavaVersionImpl();
+        this.config = JParserConfig.Mode.FILE_BY_FILE.create(javaVersion, classpath);
+        this.version = javaVersion.effectiveJavaVersionAsString();
+        this.charset = charset;
+        this.classpath = classpath.stream().map(File::getAbsolutePath).toArray(String[]::new);
+        this.sourcepath = sourceRoots.stream().map(root -> root.toAbsolutePath().toString()).toArray(String[]::new);
+        this.encodings = new String[sourcepath.length];
+        Arrays.fill(encodings, charset.name());
+        // Same rule as JParserConfig: the JDK of the classpath wins over the running one
+        this.includeRunningVMBootclasspath = classpath.stream()
+                .noneMatch(entry -> entry.getName().equals("rt.jar") || entry.getName().equals("jrt-fs.jar"));
+    }
+
+    CompilationUnitTree parse(Path file) throws IOException {
+        String source = Files.readString(file, charset);
+        ASTParser parser = config.astParser();
+        parser.setEnvironment(classpath, sourcepath, encodings, includeRunningVMBootclasspath);
+        // With a source path, the unit name must be the full path of the file to tell it apart from its copy in the roots
+        return JParser.parse(parser, version, file.toAbsolutePath().toString(), source);
+    }
+}
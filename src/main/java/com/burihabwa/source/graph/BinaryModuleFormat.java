@@ -0,0 +1,182 @@
+/*
+ * Copyright (C) 2023 Dorian Burihabwa
+ * This code is released under [MIT No Attribution](https://opensource.org/licenses/MIT-0) license.
+ */
+package com.burihabwa.source.graph;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Versioned binary representation of a {@link ModuleLayout}.
+ * <p>
+ * All numbers are big-endian 32-bit ints. The file starts with a header made of the magic number, the format version
+ * and the symbol, file, class, import, edge and string byte counts. It is followed by the sections:
+ * <ol>
+ *     <li>string table: {@code symbols + 1} offsets, then the UTF-8 bytes of the symbols padded to 4 bytes</li>
+ *     <li>node table: the path symbol of every file, then the CSR arrays of declared classes and imports</li>
+ *     <li>the declaring file of every symbol</li>
+ *     <li>the CSR arrays of the forward edges, then of the reverse edges</li>
+ * </ol>
+ * Loading maps the file in memory: int sections are bulk-copied and symbols are only decoded when requested.
+ * As the symbols of a loaded module stay in the mapping, a file is never rewritten in place: a new version is written
+ * next to it and moved over it, leaving the mapped content to the modules loaded from the previous version.
+ */
+final class BinaryModuleFormat {
+    static final int MAGIC = 0x53444742;
+    static final int VERSION = 1;
+    private static final int HEADER_INTS = 8;
+    private static final int WRITE_BUFFER_SIZE = 1 << 16;
+
+    private BinaryModuleFormat() {
+    }
+
+    static void write(ModuleLayout layout, Path path) throws IOException {
+        Path temporary = path.resolveSibling(path.getFileName() + ".tmp");
+        try {
+            writeTo(layout, temporary);
+            try {
+                Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    private static void writeTo(ModuleLayout layout, Path path) throws IOException {
+        byte[][] encoded = new byte[layout.symbols.size()][];
+        int stringBytes = 0;
+        for (int id = 0; id < encoded.length; id++) {
+            encoded[id] = layout.symbols.symbol(id).getBytes(StandardCharsets.UTF_8);
+            stringBytes += encoded[id].length;
+        }
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path), WRITE_BUFFER_SIZE))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(encoded.length);
+            out.writeInt(layout.paths.length);
+            out.writeInt(layout.classes.length);
+            out.writeInt(layout.imports.length);
+            out.writeInt(layout.dependencies.length);
+            out.writeInt(stringBytes);
+
+            int offset = 0;
+            for (byte[] symbol : encoded) {
+                out.writeInt(offset);
+                offset += symbol.length;
+            }
+            out.writeInt(offset);
+            for (byte[] symbol : encoded) {
+                out.write(symbol);
+            }
+            out.write(new byte[padding(stringBytes)]);
+
+            writeInts(out, layout.paths);
+            writeInts(out, layout.classOffsets);
+            writeInts(out, layout.classes);
+            writeInts(out, layout.importOffsets);
+            writeInts(out, layout.imports);
+            writeInts(out, layout.declaringFile);
+            writeInts(out, layout.dependencyOffsets);
+            writeInts(out, layout.dependencies);
+            writeInts(out, layout.dependentOffsets);
+            writeInts(out, layout.dependents);
+        }
+    }
+
+    static ModuleLayout map(Path path) throws IOException {
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        if (buffer.capacity() < HEADER_INTS * Integer.BYTES) {
+            throw new IOException(String.format("Truncated binary graph file (%s).", path));
+        }
+        IntBuffer header = buffer.asIntBuffer();
+        if (header.get(0) != MAGIC) {
+            throw new IOException(String.format("Not a binary graph file (%s).", path));
+        }
+        if (header.get(1) != VERSION) {
+            throw new IOException(String.format("Unsupported binary graph version %d (%s).", header.get(1), path));
+        }
+        int symbolCount = header.get(2);
+        int fileCount = header.get(3);
+        int classCount = header.get(4);
+        int importCount = header.get(5);
+        int edgeCount = header.get(6);
+        int stringBytes = header.get(7);
+        long expectedSize = Integer.BYTES * (HEADER_INTS + (symbolCount + 1L) + fileCount + 4L * (fileCount + 1L)
+                + classCount + importCount + symbolCount + 2L * edgeCount) + stringBytes + padding(stringBytes);
+        if (symbolCount < 0 || fileCount < 0 || classCount < 0 || importCount < 0 || edgeCount < 0 || stringBytes < 0 ||
+                buffer.capacity() != expectedSize) {
+            throw new IOException(String.format("Corrupted binary graph file (%s).", path));
+        }
+
+        Sections sections = new Sections(buffer, HEADER_INTS * Integer.BYTES);
+        int[] stringOffsets = sections.ints(symbolCount + 1);
+        ByteBuffer strings = sections.bytes(stringBytes);
+        int[] paths = sections.ints(fileCount);
+        int[] classOffsets = sections.ints(fileCount + 1);
+        int[] classes = sections.ints(classCount);
+        int[] importOffsets = sections.ints(fileCount + 1);
+        int[] imports = sections.ints(importCount);
+        int[] declaringFile = sections.ints(symbolCount);
+        int[] dependencyOffsets = sections.ints(fileCount + 1);
+        int[] dependencies = sections.ints(edgeCount);
+        int[] dependentOffsets = sections.ints(fileCount + 1);
+        int[] dependents = sections.ints(edgeCount);
+        return new ModuleLayout(new MappedSymbols(strings, stringOffsets), paths,
+                classOffsets, classes,
+                importOffsets, imports,
+                declaringFile,
+                dependencyOffsets, dependencies,
+                dependentOffsets, dependents);
+    }
+
+    private static void writeInts(DataOutputStream out, int[] values) throws IOException {
+        for (int value : values) {
+            out.writeInt(value);
+        }
+    }
+
+    private static int padding(int bytes) {
+        return (Integer.BYTES - bytes % Integer.BYTES) % Integer.BYTES;
+    }
+
+    /**
+     * Cursor over the consecutive sections of a mapped file.
+     */
+    private static final class Sections {
+        private final ByteBuffer buffer;
+        private int position;
+
+        private Sections(ByteBuffer buffer, int position) {
+            this.buffer = buffer;
+            this.position = position;
+        }
+
+        private int[] ints(int count) {
+            int[] values = new int[count];
+            buffer.duplicate().position(position).asIntBuffer().get(values);
+            position += count * Integer.BYTES;
+            return values;
+        }
+
+        private ByteBuffer bytes(int count) {
+            ByteBuffer slice = buffer.duplicate().position(position).limit(position + count).slice();
+            position += count + padding(count);
+            return slice;
+        }
+    }
+}
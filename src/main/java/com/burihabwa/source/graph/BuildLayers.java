@@ -0,0 +1,212 @@
+/*
+ * Copyright (C) 2023 Dorian Burihabwa
+ * This code is released under [MIT No Attribution](https://opensource.org/licenses/MIT-0) license.
+ */
+package com.burihabwa.source.graph;
+
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Schedule of a build following the imports of a module.
+ * <p>
+ * Import cycles are condensed first, the files of a cycle having to be built together. Every file is then placed in
+ * the layer right after the deepest of its dependencies: files without dependencies form layer 0 and the files of a
+ * layer only depend on earlier layers, so that they can be built in parallel. The width of a layer bounds the number
+ * of useful workers and the critical path, the chain of dependencies with the most files, bounds the build time.
+ */
+public class BuildLayers {
+    private final Condensation condensation;
+    /**
+     * Components of every layer, in ascending order.
+     */
+    private final int[] layerOffsets;
+    private final int[] layerComponents;
+    private final int[] criticalPath;
+    private final int criticalPathLength;
+
+    private BuildLayers(Condensation condensation, int[] layerOffsets, int[] layerComponents, int[] criticalPath, int criticalPathLength) {
+        this.condensation = condensation;
+        this.layerOffsets = layerOffsets;
+        this.layerComponents = layerComponents;
+        this.criticalPath = criticalPath;
+        this.criticalPathLength = criticalPathLength;
+    }
+
+    /**
+     * Layers the condensed graph in a single pass: components being numbered in dependency order, the layers of the
+     * dependencies of a component are known when it is reached, which gives the same layers as Kahn's algorithm.
+     */
+    public static BuildLayers of(Condensation condensation) {
+        int components = condensation.size();
+        int[] layerOf = new int[components];
+        int[] cost = new int[components];
+        int[] next = new int[components];
+        int layers = 0;
+        int last = -1;
+        for (int component = 0; component < components; component++) {
+            int layer = 0;
+            int heaviest = -1;
+            for (int i = condensation.dependencyOffsets[component]; i < condensation.dependencyOffsets[component + 1]; i++) {
+                int dependency = condensation.dependencies[i];
+                layer = Math.max(layer, layerOf[dependency] + 1);
+                if (heaviest < 0 || cost[dependency] > cost[heaviest]) {
+                    heaviest = dependency;
+                }
+            }
+            layerOf[component] = layer;
+            layers = Math.max(layers, layer + 1);
+            next[component] = heaviest;
+            cost[component] = size(condensation, component) + (heaviest < 0 ? 0 : cost[heaviest]);
+            if (last < 0 || cost[component] > cost[last]) {
+                last = component;
+            }
+        }
+
+        int[] layerOffsets = new int[layers + 1];
+        for (int layer : layerOf) {
+            layerOffsets[layer + 1]++;
+        }
+        for (int layer = 0; layer < layers; layer++) {
+            layerOffsets[layer + 1] += layerOffsets[layer];
+        }
+        int[] position = Arrays.copyOf(layerOffsets, layers);
+        int[] layerComponents = new int[components];
+        for (int component = 0; component < components; component++) {
+            layerComponents[position[layerOf[component]]++] = component;
+        }
+
+        IntList path = new IntList();
+        for (int component = last; component >= 0; component = next[component]) {
+            path.add(component);
+        }
+        int[] criticalPath = new int[path.size()];
+        for (int i = 0; i < criticalPath.length; i++) {
+            criticalPath[i] = path.get(criticalPath.length - 1 - i);
+        }
+        return new BuildLayers(condensation, layerOffsets, layerComponents, criticalPath, last < 0 ? 0 : cost[last]);
+    }
+
+    private static int size(Condensation condensation, int component) {
+        return condensation.memberOffsets[component + 1] - condensation.memberOffsets[component];
+    }
+
+    public int size() {
+        return layerOffsets.length - 1;
+    }
+
+    /**
+     * @return The paths of the files of a layer, component by component.
+     */
+    public List<Path> files(int layer) {
+        List<Path> files = new ArrayList<>(width(layer));
+        for (int i = layerOffsets[layer]; i < layerOffsets[layer + 1]; i++) {
+            files.addAll(condensation.files(layerComponents[i]));
+        }
+        return files;
+    }
+
+    /**
+     * @return The number of files in a layer.
+     */
+    public int width(int layer) {
+        int width = 0;
+        for (int i = layerOffsets[layer]; i < layerOffsets[layer + 1]; i++) {
+            width += size(condensation, layerComponents[i]);
+        }
+        return width;
+    }
+
+    /**
+     * @return The files of the critical path, dependencies first.
+     */
+    public List<Path> criticalPath() {
+        List<Path> files = new ArrayList<>(criticalPathLength);
+        for (int component : criticalPath) {
+            files.addAll(condensation.files(component));
+        }
+        return files;
+    }
+
+    /**
+     * @return The number of files on the critical path.
+     */
+    public int criticalPathLength() {
+        return criticalPathLength;
+    }
+
+    @Override
+    public String toString() {
+        StringWriter writer = new StringWriter();
+        try {
+            write(writer);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return writer.toString();
+    }
+
+    /**
+     * Writes the JSON report, as returned by {@link #toString()}, to a UTF-8 encoded file.
+     */
+    public void write(Path path) throws IOException {
+        try (Writer writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
+            write(writer);
+        }
+    }
+
+    /**
+     * Streams the JSON report: the width and files of every layer, the largest width and the critical path.
+     */
+    public void write(Writer out) throws IOException {
+        JsonWriter writer = new JsonWriter(out);
+        writer.setHtmlSafe(true);
+        writer.beginObject();
+        writer.name("layers");
+        writer.beginArray();
+        int maxWidth = 0;
+        for (int layer = 0; layer < size(); layer++) {
+            int width = width(layer);
+            maxWidth = Math.max(maxWidth, width);
+            writer.beginObject();
+            writer.name("width").value(width);
+            writer.name("files");
+            writer.beginArray();
+            for (int i = layerOffsets[layer]; i < layerOffsets[layer + 1]; i++) {
+                writeFiles(writer, layerComponents[i]);
+            }
+            writer.endArray();
+            writer.endObject();
+        }
+        writer.endArray();
+        writer.name("maxWidth").value(maxWidth);
+        writer.name("criticalPath");
+        writer.beginObject();
+        writer.name("length").value(criticalPathLength);
+        writer.name("files");
+        writer.beginArray();
+        for (int component : criticalPath) {
+            writeFiles(writer, component);
+        }
+        writer.endArray();
+        writer.endObject();
+        writer.endObject();
+        writer.flush();
+    }
+
+    private void writeFiles(JsonWriter writer, int component) throws IOException {
+        for (int i = condensation.memberOffsets[component]; i < condensation.memberOffsets[component + 1]; i++) {
+            writer.value(condensation.path(condensation.members[i]));
+        }
+    }
+}
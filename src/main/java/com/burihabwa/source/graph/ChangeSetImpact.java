@@ -0,0 +1,29 @@
+/*
+ * Copyright (C) 2023 Dorian Burihabwa
+ * This code is released under [MIT No Attribution](https://opensource.org/licenses/MIT-0) license.
+ */
+package com.burihabwa.source.graph;
+
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Outcome of a batch impact query over a set of changed files.
+ */
+public class ChangeSetImpact {
+    /**
+     * Source files impacted by the change set, ordered by distance to the closest changed file.
+     * Changed files are never listed.
+     */
+    public final List<SourceFile> impacted;
+    /**
+     * Changed paths that could not be found in the module, in the order they were submitted.
+     */
+    public final List<Path> unknownPaths;
+
+    public ChangeSetImpact(List<SourceFile> impacted, List<Path> unknownPaths) {
+        this.impacted = Collections.unmodifiableList(impacted);
+        this.unknownPaths = Collections.unmodifiableList(unknownPaths);
+    }
+}
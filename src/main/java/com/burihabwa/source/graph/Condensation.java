@@ -0,0 +1,210 @@
+/*
+ * Copyright (C) 2023 Dorian Burihabwa
+ * This code is released under [MIT No Attribution](https://opensource.org/licenses/MIT-0) license.
+ */
+package com.burihabwa.source.graph;
+
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Strongly connected components of the file graph of a module and the acyclic graph they form.
+ * <p>
+ * Components are numbered from 0 in dependency order: a component only depends on components with a lower number.
+ * A component of more than one file is an import cycle.
+ */
+public class Condensation {
+    private static final String NEW_LINE = System.lineSeparator();
+
+    private final Symbols symbols;
+    private final int[] paths;
+    final int[] memberOffsets;
+    final int[] members;
+    final int[] dependencyOffsets;
+    final int[] dependencies;
+
+    private Condensation(Symbols symbols, int[] paths, int[] memberOffsets, int[] members, int[] dependencyOffsets, int[] dependencies) {
+        this.symbols = symbols;
+        this.paths = paths;
+        this.memberOffsets = memberOffsets;
+        this.members = members;
+        this.dependencyOffsets = dependencyOffsets;
+        this.dependencies = dependencies;
+    }
+
+    static Condensation of(ModuleLayout layout) {
+        int[] componentOf = StronglyConnectedComponents.componentOf(layout.dependencyOffsets, layout.dependencies);
+        int components = 0;
+        for (int component : componentOf) {
+            components = Math.max(components, component + 1);
+        }
+        int[] memberOffsets = new int[components + 1];
+        for (int component : componentOf) {
+            memberOffsets[component + 1]++;
+        }
+        for (int component = 0; component < components; component++) {
+            memberOffsets[component + 1] += memberOffsets[component];
+        }
+        int[] next = Arrays.copyOf(memberOffsets, components);
+        int[] members = new int[componentOf.length];
+        for (int file = 0; file < componentOf.length; file++) {
+            members[next[componentOf[file]]++] = file;
+        }
+
+        int[] dependencyOffsets = new int[components + 1];
+        IntList dependencies = new IntList(layout.dependencies.length);
+        int[] lastSeenBy = new int[components];
+        Arrays.fill(lastSeenBy, -1);
+        for (int component = 0; component < components; component++) {
+            int rowStart = dependencies.size();
+            for (int i = memberOffsets[component]; i < memberOffsets[component + 1]; i++) {
+                int file = members[i];
+                for (int j = layout.dependencyOffsets[file]; j < layout.dependencyOffsets[file + 1]; j++) {
+                    int dependency = componentOf[layout.dependencies[j]];
+                    if (dependency != component && lastSeenBy[dependency] != component) {
+                        lastSeenBy[dependency] = component;
+                        dependencies.add(dependency);
+                    }
+                }
+            }
+            dependencies.sort(rowStart, dependencies.size());
+            dependencyOffsets[component + 1] = dependencies.size();
+        }
+        return new Condensation(layout.symbols, layout.paths, memberOffsets, members, dependencyOffsets, dependencies.toArray());
+    }
+
+    /**
+     * @return The number of components.
+     */
+    public int size() {
+        return memberOffsets.length - 1;
+    }
+
+    /**
+     * @return The paths of the files of a component, in the order of the module.
+     */
+    public List<Path> files(int component) {
+        List<Path> files = new ArrayList<>(memberOffsets[component + 1] - memberOffsets[component]);
+        for (int i = memberOffsets[component]; i < memberOffsets[component + 1]; i++) {
+            files.add(Path.of(path(members[i])));
+        }
+        return files;
+    }
+
+    /**
+     * @return The components a component depends on, in ascending order.
+     */
+    public int[] dependencies(int component) {
+        return Arrays.copyOfRange(dependencies, dependencyOffsets[component], dependencyOffsets[component + 1]);
+    }
+
+    public boolean isCycle(int component) {
+        return memberOffsets[component + 1] - memberOffsets[component] > 1;
+    }
+
+    /**
+     * @return The files of every import cycle, cycles being listed in component order.
+     */
+    public List<List<Path>> cycles() {
+        List<List<Path>> cycles = new ArrayList<>();
+        for (int component = 0; component < size(); component++) {
+            if (isCycle(component)) {
+                cycles.add(files(component));
+            }
+        }
+        return cycles;
+    }
+
+    String path(int file) {
+        return symbols.symbol(paths[file]);
+    }
+
+    @Override
+    public String toString() {
+        StringWriter writer = new StringWriter();
+        try {
+            write(writer);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return writer.toString();
+    }
+
+    /**
+     * Writes the JSON report, as returned by {@link #toString()}, to a UTF-8 encoded file.
+     */
+    public void write(Path path) throws IOException {
+        try (Writer writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
+            write(writer);
+        }
+    }
+
+    /**
+     * Streams the JSON report: the files and dependencies of every component, in component order, followed by the
+     * numbers of the components that are import cycles.
+     */
+    public void write(Writer out) throws IOException {
+        JsonWriter writer = new JsonWriter(out);
+        writer.setHtmlSafe(true);
+        writer.beginObject();
+        writer.name("components");
+        writer.beginArray();
+        for (int component = 0; component < size(); component++) {
+            writer.beginObject();
+            writer.name("files");
+            writer.beginArray();
+            for (int i = memberOffsets[component]; i < memberOffsets[component + 1]; i++) {
+                writer.value(path(members[i]));
+            }
+            writer.endArray();
+            writer.name("dependencies");
+            writer.beginArray();
+            for (int i = dependencyOffsets[component]; i < dependencyOffsets[component + 1]; i++) {
+                writer.value(dependencies[i]);
+            }
+            writer.endArray();
+            writer.endObject();
+        }
+        writer.endArray();
+        writer.name("cycles");
+        writer.beginArray();
+        for (int component = 0; component < size(); component++) {
+            if (isCycle(component)) {
+                writer.value(component);
+            }
+        }
+        writer.endArray();
+        writer.endObject();
+        writer.flush();
+    }
+
+    /**
+     * Streams the condensed graph as a DOT document, with one node per component.
+     * Import cycles are drawn as red boxes listing their files.
+     */
+    public void writeDot(Writer out) throws IOException {
+        out.write("digraph condensation {" + NEW_LINE);
+        for (int component = 0; component < size(); component++) {
+            List<String> label = new ArrayList<>(memberOffsets[component + 1] - memberOffsets[component]);
+            for (int i = memberOffsets[component]; i < memberOffsets[component + 1]; i++) {
+                label.add(path(members[i]));
+            }
+            out.write("  \"" + component + "\" [label=" + DotWriter.quoteLines(label) + (isCycle(component) ? ", shape=box, color=red" : "") + "];" + NEW_LINE);
+            for (int i = dependencyOffsets[component]; i < dependencyOffsets[component + 1]; i++) {
+                out.write("  \"" + component + "\" -> \"" + dependencies[i] + "\";" + NEW_LINE);
+            }
+        }
+        out.write("}" + NEW_LINE);
+        out.flush();
+    }
+}
@@ -0,0 +1,43 @@
+/*
+ * Copyright (C) 2023 Dorian Burihabwa
+ * This code is released under [MIT No Attribution](https://opensource.org/licenses/MIT-0) license.
+ */
+package com.burihabwa.source.graph;
+
+import java.nio.file.Path;
+import java.util.Objects;
+
+/**
+ * Edge of the file graph: {@code from} imports a class declared by {@code to}.
+ */
+public class Dependency {
+    public final Path from;
+    public final Path to;
+
+    public Dependency(Path from, Path to) {
+        this.from = from;
+        this.to = to;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        Dependency that = (Dependency) o;
+        return from.equals(that.from) && to.equals(that.to);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(from, to);
+    }
+
+    @Override
+    public String toString() {
+        return from + " -> " + to;
+    }
+}
@@ -0,0 +1,23 @@
+/*
+ * Copyright (C) 2023 Dorian Burihabwa
+ * This code is released under [MIT No Attribution](https://opensource.org/licenses/MIT-0) license.
+ */
+package com.burihabwa.source.graph;
+
+/**
+ * Level at which source files are drawn when exporting a module to DOT.
+ */
+public enum DotGranularity {
+    /**
+     * One node per source file and one edge per resolved import.
+     */
+    FILE,
+    /**
+     * One cluster per package, named after the first class declared in each file.
+     */
+    PACKAGE,
+    /**
+     * One cluster per directory containing source files.
+     */
+    DIRECTORY
+}
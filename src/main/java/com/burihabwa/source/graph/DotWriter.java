@@ -0,0 +1,149 @@
+/*
+ * Copyright (C) 2023 Dorian Burihabwa
+ * This code is released under [MIT No Attribution](https://opensource.org/licenses/MIT-0) license.
+ */
+package com.burihabwa.source.graph;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Streams a module as a Graphviz DOT document.
+ * <p>
+ * At file level, every resolved import is written as an edge. When aggregating, source files are grouped into one
+ * {@code subgraph cluster_*} per package or directory and the imports between two groups are written as a single
+ * edge weighted by their number. Imports within a group are only counted in its label. Memory use is bounded by the
+ * number of groups, whatever the number of imports.
+ */
+final class DotWriter {
+    private static final String NEW_LINE = System.lineSeparator();
+    private static final String DEFAULT_PACKAGE = "(default package)";
+
+    private final ModuleLayout layout;
+    private final Writer out;
+
+    DotWriter(ModuleLayout layout, Writer out) {
+        this.layout = layout;
+        this.out = out;
+    }
+
+    void write(DotGranularity granularity) throws IOException {
+        out.write("digraph module {" + NEW_LINE);
+        if (granularity == DotGranularity.FILE) {
+            writeFiles();
+        } else {
+            writeGroups(granularity);
+        }
+        out.write("}" + NEW_LINE);
+        out.flush();
+    }
+
+    private void writeFiles() throws IOException {
+        for (int file = 0; file < layout.paths.length; file++) {
+            String path = quote(layout.symbols.symbol(layout.paths[file]));
+            if (layout.importOffsets[file] == layout.importOffsets[file + 1]) {
+                out.write("  " + path + ";" + NEW_LINE);
+                continue;
+            }
+            for (int i = layout.importOffsets[file]; i < layout.importOffsets[file + 1]; i++) {
+                int importedFile = layout.declaringFile[layout.imports[i]];
+                if (importedFile >= 0) {
+                    out.write("  " + path + " -> " + quote(layout.symbols.symbol(layout.paths[importedFile])) + ";" + NEW_LINE);
+                }
+            }
+        }
+    }
+
+    private void writeGroups(DotGranularity granularity) throws IOException {
+        SymbolTable groups = new SymbolTable();
+        int[] groupOf = new int[layout.paths.length];
+        for (int file = 0; file < groupOf.length; file++) {
+            groupOf[file] = groups.intern(groupName(file, granularity));
+        }
+        int groupCount = groups.size();
+        int[] memberOffsets = new int[groupCount + 1];
+        for (int group : groupOf) {
+            memberOffsets[group + 1]++;
+        }
+        for (int group = 0; group < groupCount; group++) {
+            memberOffsets[group + 1] += memberOffsets[group];
+        }
+        int[] next = Arrays.copyOf(memberOffsets, groupCount);
+        int[] members = new int[groupOf.length];
+        for (int file = 0; file < groupOf.length; file++) {
+            members[next[groupOf[file]]++] = file;
+        }
+
+        int[] weights = new int[groupCount];
+        IntList targets = new IntList();
+        for (int group = 0; group < groupCount; group++) {
+            for (int i = memberOffsets[group]; i < memberOffsets[group + 1]; i++) {
+                int file = members[i];
+                for (int j = layout.importOffsets[file]; j < layout.importOffsets[file + 1]; j++) {
+                    int importedFile = layout.declaringFile[layout.imports[j]];
+                    if (importedFile < 0) {
+                        continue;
+                    }
+                    int target = groupOf[importedFile];
+                    if (weights[target]++ == 0) {
+                        targets.add(target);
+                    }
+                }
+            }
+            String name = groups.symbol(group);
+            int internalImports = weights[group];
+            out.write("  subgraph " + quote("cluster_" + group) + " {" + NEW_LINE);
+            out.write("    label = " + quote(name) + ";" + NEW_LINE);
+            int size = memberOffsets[group + 1] - memberOffsets[group];
+            out.write("    " + quote(name) + " [shape=box, label=" + quoteLines(List.of(name, size + " files, " + internalImports + " internal imports")) + "];" + NEW_LINE);
+            out.write("  }" + NEW_LINE);
+            targets.sort(0, targets.size());
+            for (int i = 0; i < targets.size(); i++) {
+                int target = targets.get(i);
+                if (target != group) {
+                    out.write("  " + quote(name) + " -> " + quote(groups.symbol(target)) + " [weight=" + weights[target] + ", label=\"" + weights[target] + "\"];" + NEW_LINE);
+                }
+                weights[target] = 0;
+            }
+            targets.clear();
+        }
+    }
+
+    private String groupName(int file, DotGranularity granularity) {
+        String path = layout.symbols.symbol(layout.paths[file]);
+        if (granularity == DotGranularity.PACKAGE && layout.classOffsets[file] < layout.classOffsets[file + 1]) {
+            String clazz = layout.symbols.symbol(layout.classes[layout.classOffsets[file]]);
+            int lastDot = clazz.lastIndexOf('.');
+            return lastDot < 0 ? DEFAULT_PACKAGE : clazz.substring(0, lastDot);
+        }
+        int lastSeparator = Math.max(path.lastIndexOf('/'), path.lastIndexOf('\\'));
+        return lastSeparator < 0 ? "." : path.substring(0, lastSeparator);
+    }
+
+    /**
+     * @return The name as a DOT string, backslashes being escaped before quotes so that Windows paths keep theirs.
+     */
+    static String quote(String name) {
+        return "\"" + escape(name) + "\"";
+    }
+
+    /**
+     * @return The lines as a single DOT string, separated by DOT line breaks.
+     */
+    static String quoteLines(List<String> lines) {
+        StringBuilder quoted = new StringBuilder("\"");
+        for (int i = 0; i < lines.size(); i++) {
+            if (i > 0) {
+                quoted.append("\\n");
+            }
+            quoted.append(escape(lines.get(i)));
+        }
+        return quoted.append('"').toString();
+    }
+
+    private static String escape(String name) {
+        return name.replace("\\", "\\\\").replace("\"", "\\\"");
+    }
+}
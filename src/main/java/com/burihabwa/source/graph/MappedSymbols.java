@@ -0,0 +1,47 @@
+/*
+ * Copyright (C) 2023 Dorian Burihabwa
+ * This code is released under [MIT No Attribution](https://opensource.org/licenses/MIT-0) license.
+ */
+package com.burihabwa.source.graph;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * String table of a binary graph file, decoding each symbol from the mapped bytes the first time it is requested.
+ */
+final class MappedSymbols implements Symbols {
+    private final ByteBuffer bytes;
+    /**
+     * Position of every symbol in {@code bytes}, followed by the end of the last one.
+     */
+    private final int[] offsets;
+    private final String[] decoded;
+
+    MappedSymbols(ByteBuffer bytes, int[] offsets) {
+        this.bytes = bytes;
+        this.offsets = offsets;
+        this.decoded = new String[offsets.length - 1];
+    }
+
+    @Override
+    public String symbol(int id) {
+        if (id < 0 || id >= decoded.length) {
+            throw new IndexOutOfBoundsException(String.format("Unknown symbol id (%d).", id));
+        }
+        // Racing threads may decode the same symbol twice, which is harmless as strings are immutable
+        String symbol = decoded[id];
+        if (symbol == null) {
+            byte[] utf8 = new byte[offsets[id + 1] - offsets[id]];
+            bytes.duplicate().position(offsets[id]).get(utf8);
+            symbol = new String(utf8, StandardCharsets.UTF_8);
+            decoded[id] = symbol;
+        }
+        return symbol;
+    }
+
+    @Override
+    public int size() {
+        return decoded.length;
+    }
+}
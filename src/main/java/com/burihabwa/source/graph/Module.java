@@ -4,137 +4,547 @@
  */
 package com.burihabwa.source.graph;
 
-import com.google.gson.*;
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+import com.google.gson.stream.MalformedJsonException;
 
-import javax.annotation.CheckForNull;
-import java.io.FileReader;
-import java.io.IOException;
-import java.lang.reflect.Type;
+import java.io.*;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
 
+/**
+ * Dependency graph of the source files of a module.
+ * <p>
+ * Paths and fully qualified names are interned into a {@link SymbolTable} and the graph is stored in the int arrays
+ * described by {@link ModuleLayout}.
+ */
 public class Module {
-    private List<SourceFile> sourceFiles;
-    private Map<String, String> classToPath;
+    private static final int READ_BUFFER_SIZE = 1 << 16;
+    private static final int WRITE_BUFFER_SIZE = 1 << 16;
+
+    private final Symbols symbols;
+    private final int[] paths;
+    private final int[] classOffsets;
+    private final int[] classes;
+    private final int[] importOffsets;
+    private final int[] imports;
+    private final int[] declaringFile;
+    private final int[] dependencyOffsets;
+    private final int[] dependencies;
+    private final int[] dependentOffsets;
+    private final int[] dependents;
+    /**
+     * Built on the first path lookup, so that modules mapped from a binary file do not decode every path upfront.
+     */
+    private volatile PathIndex pathIndex;
 
     public Module(List<SourceFile> sourceFiles) {
-        this.sourceFiles = Collections.unmodifiableList(sourceFiles);
-        classToPath = new HashMap<>();
-        sourceFiles.stream().forEach(sourceFile -> {
-            String sourcePath = sourceFile.path.toString();
-            sourceFile.classes.forEach(clazz -> classToPath.put(clazz, sourcePath));
-        });
+        this(addAll(new ModuleBuilder(), sourceFiles).layout());
+    }
+
+    Module(ModuleLayout layout) {
+        symbols = layout.symbols;
+        paths = layout.paths;
+        classOffsets = layout.classOffsets;
+        classes = layout.classes;
+        importOffsets = layout.importOffsets;
+        imports = layout.imports;
+        declaringFile = layout.declaringFile;
+        dependencyOffsets = layout.dependencyOffsets;
+        dependencies = layout.dependencies;
+        dependentOffsets = layout.dependentOffsets;
+        dependents = layout.dependents;
+    }
+
+    private static ModuleBuilder addAll(ModuleBuilder builder, List<SourceFile> sourceFiles) {
+        sourceFiles.forEach(builder::addSourceFile);
+        return builder;
     }
 
     public static Module of(Path graph) throws IOException {
-        Gson gson = new Gson();
-        JsonObject object;
-        try (FileReader reader = new FileReader(graph.toFile())) {
-            object = gson.fromJson(reader, JsonObject.class);
+        return of(graph, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Loads a module from its JSON representation in a single pass, without materializing a JSON tree.
+     * Files written by {@link #writeCompressed(Path)} are recognized by their content and decompressed on the fly.
+     */
+    public static Module of(Path graph, Charset charset) throws IOException {
+        try (Reader reader = new BufferedReader(new InputStreamReader(open(graph), charset), READ_BUFFER_SIZE)) {
+            return read(reader);
+        }
+    }
+
+    /**
+     * Opens a JSON graph, decompressing it when it starts with the gzip magic number.
+     */
+    static InputStream open(Path graph) throws IOException {
+        InputStream in = new BufferedInputStream(Files.newInputStream(graph), READ_BUFFER_SIZE);
+        try {
+            in.mark(2);
+            int first = in.read();
+            int second = in.read();
+            in.reset();
+            if (first == (GZIPInputStream.GZIP_MAGIC & 0xff) && second == GZIPInputStream.GZIP_MAGIC >>> 8) {
+                return new GZIPInputStream(in, READ_BUFFER_SIZE);
+            }
+            return in;
+        } catch (IOException e) {
+            in.close();
+            throw e;
         }
-        return from(object);
     }
 
     public static Module of(String json) {
-        return Module.from(new Gson().fromJson(json, (Type) JsonObject.class));
-    }
-
-    private static Module from(JsonObject object) {
-        JsonArray fileElements = object.getAsJsonArray("files");
-        List<SourceFile> convertedSourceFiles = new ArrayList<>();
-        fileElements.forEach(element -> {
-            Path path = Path.of(element.getAsJsonObject().get("path").getAsString());
-            List<String> classes = parseStringArray(element.getAsJsonObject().get("classes").getAsJsonArray());
-            List<String> imports = parseStringArray(element.getAsJsonObject().get("imports").getAsJsonArray());
-            SourceFile file = new SourceFile(path, classes, imports);
-            convertedSourceFiles.add(file);
-        });
-        return new Module(convertedSourceFiles);
+        try {
+            return read(new StringReader(json));
+        } catch (IOException e) {
+            throw new JsonSyntaxException(e);
+        }
+    }
+
+    private static Module read(Reader in) throws IOException {
+        return read(in, new ModuleBuilder()).build();
+    }
+
+    /**
+     * Adds the source files of a JSON graph to a builder.
+     */
+    static ModuleBuilder read(Reader in, ModuleBuilder builder) throws IOException {
+        JsonReader reader = new JsonReader(in);
+        List<String> classes = new ArrayList<>();
+        List<String> imports = new ArrayList<>();
+        try {
+            reader.beginObject();
+            while (reader.hasNext()) {
+                if (!reader.nextName().equals("files")) {
+                    reader.skipValue();
+                    continue;
+                }
+                reader.beginArray();
+                while (reader.hasNext()) {
+                    readSourceFile(reader, builder, classes, imports);
+                }
+                reader.endArray();
+            }
+            reader.endObject();
+        } catch (MalformedJsonException | IllegalStateException e) {
+            throw new JsonSyntaxException(e);
+        }
+        return builder;
+    }
+
+    static void readSourceFile(JsonReader reader, ModuleBuilder builder, List<String> classes, List<String> imports) throws IOException {
+        String path = null;
+        classes.clear();
+        imports.clear();
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "path":
+                    path = reader.nextString();
+                    break;
+                case "classes":
+                    readStringArray(reader, classes);
+                    break;
+                case "imports":
+                    readStringArray(reader, imports);
+                    break;
+                default:
+                    reader.skipValue();
+            }
+        }
+        reader.endObject();
+        if (path == null) {
+            throw new JsonSyntaxException(String.format("Source file without a path (%s).", reader.getPath()));
+        }
+        builder.addSourceFile(path, classes, imports);
+    }
+
+    private static void readStringArray(JsonReader reader, List<String> tokens) throws IOException {
+        reader.beginArray();
+        while (reader.hasNext()) {
+            tokens.add(reader.nextString());
+        }
+        reader.endArray();
+    }
+
+    /**
+     * Loads a module written by {@link #writeBinary(Path)}.
+     * The file is memory-mapped: its int sections are copied in bulk and paths and class names are only decoded
+     * when a query needs them.
+     */
+    public static Module map(Path graph) throws IOException {
+        return new Module(BinaryModuleFormat.map(graph));
+    }
+
+    /**
+     * @return The number of source files in the module.
+     */
+    public int size() {
+        return paths.length;
     }
 
     public List<SourceFile> getSourceFilesImpactedByChangeOf(Path changed) {
-        SourceFile changedFile = getSourceFile(changed);
-        if (changedFile == null) {
-            throw new IllegalArgumentException(String.format("Path to source file cannot be found in source set (%s).", changed));
+        int changedFile = indexOf(changed);
+        if (changedFile < 0) {
+            throw new UnknownSourceFileException(changed);
+        }
+        List<SourceFile> impactedFiles = new ArrayList<>(dependentOffsets[changedFile + 1] - dependentOffsets[changedFile]);
+        for (int i = dependentOffsets[changedFile]; i < dependentOffsets[changedFile + 1]; i++) {
+            impactedFiles.add(sourceFile(dependents[i]));
         }
-        Set<String> impactedTypes = changedFile.classes.stream().collect(Collectors.toUnmodifiableSet());
-        return sourceFiles.parallelStream()
-                .filter(sourceFile -> importsImpactedType(sourceFile, impactedTypes))
-                .collect(Collectors.toList());
+        return impactedFiles;
     }
 
-    private static boolean importsImpactedType(SourceFile sourceFile, Set<String> impactedTypes) {
-        Set<String> imports = sourceFile.imports.stream().collect(Collectors.toSet());
-        imports.retainAll(impactedTypes);
-        return !imports.isEmpty();
+    /**
+     * Lists the source files declaring the classes imported by a file, in the order of the module.
+     */
+    public List<SourceFile> getDependenciesOf(Path file) {
+        int source = indexOf(file);
+        if (source < 0) {
+            throw new UnknownSourceFileException(file);
+        }
+        List<SourceFile> dependencyFiles = new ArrayList<>(dependencyOffsets[source + 1] - dependencyOffsets[source]);
+        for (int i = dependencyOffsets[source]; i < dependencyOffsets[source + 1]; i++) {
+            dependencyFiles.add(sourceFile(dependencies[i]));
+        }
+        return dependencyFiles;
     }
 
-    @CheckForNull
-    private SourceFile getSourceFile(Path path) {
-        for (SourceFile sourceFile : sourceFiles) {
-            if (sourceFile.path.equals(path)) {
-                return sourceFile;
+    /**
+     * Finds one of the shortest chains of imports leading from a file to another one.
+     *
+     * @return The files of the chain, {@code from} and {@code to} included, or an empty list when {@code from} does
+     * not depend on {@code to}.
+     */
+    public List<SourceFile> getDependencyPath(Path from, Path to) {
+        int source = indexOf(from);
+        if (source < 0) {
+            throw new UnknownSourceFileException(from);
+        }
+        int target = indexOf(to);
+        if (target < 0) {
+            throw new UnknownSourceFileException(to);
+        }
+        int[] parent = new int[paths.length];
+        Arrays.fill(parent, -1);
+        parent[source] = source;
+        int[] queue = new int[paths.length];
+        int head = 0;
+        int tail = 0;
+        queue[tail++] = source;
+        while (head < tail && parent[target] < 0) {
+            int file = queue[head++];
+            for (int i = dependencyOffsets[file]; i < dependencyOffsets[file + 1]; i++) {
+                int dependency = dependencies[i];
+                if (parent[dependency] < 0) {
+                    parent[dependency] = file;
+                    queue[tail++] = dependency;
+                }
             }
         }
-        return null;
+        if (parent[target] < 0) {
+            return Collections.emptyList();
+        }
+        IntList reversed = new IntList();
+        for (int file = target; file != source; file = parent[file]) {
+            reversed.add(file);
+        }
+        reversed.add(source);
+        List<SourceFile> chain = new ArrayList<>(reversed.size());
+        for (int i = reversed.size() - 1; i >= 0; i--) {
+            chain.add(sourceFile(reversed.get(i)));
+        }
+        return chain;
     }
 
-    @Override
-    public String toString() {
-        GsonBuilder builder = new GsonBuilder();
-        builder.registerTypeAdapter(Module.class, new ModuleSerializer());
-        return builder.create().toJson(this);
+    /**
+     * Lists the source files that depend, directly or through other source files, on the changed file.
+     * The result is ordered by distance to the changed file: direct importers come first, then their importers...
+     */
+    public List<SourceFile> getSourceFilesTransitivelyImpactedByChangeOf(Path changed) {
+        return getSourceFilesTransitivelyImpactedByChangeOf(changed, Integer.MAX_VALUE);
     }
 
-    private static List<String> parseStringArray(JsonArray array) {
-        List<String> tokens = new ArrayList<>(array.size());
-        for (JsonElement jsonElement : array) {
-            tokens.add(jsonElement.getAsString());
+    /**
+     * Same as {@link #getSourceFilesTransitivelyImpactedByChangeOf(Path)} but stops after {@code maxDepth} hops,
+     * a depth of 1 listing the direct importers only.
+     */
+    public List<SourceFile> getSourceFilesTransitivelyImpactedByChangeOf(Path changed, int maxDepth) {
+        if (maxDepth < 0) {
+            throw new IllegalArgumentException(String.format("Depth must be positive or zero (%d).", maxDepth));
+        }
+        int changedFile = indexOf(changed);
+        if (changedFile < 0) {
+            throw new UnknownSourceFileException(changed);
+        }
+        int[] queue = new int[paths.length];
+        queue[0] = changedFile;
+        int reached = traverseDependents(queue, 1, maxDepth);
+        List<SourceFile> impactedFiles = new ArrayList<>(reached - 1);
+        for (int i = 1; i < reached; i++) {
+            impactedFiles.add(sourceFile(queue[i]));
         }
-        return tokens;
+        return impactedFiles;
     }
 
-    public String toDot() {
-        StringBuilder builder = new StringBuilder();
-        builder.append("digraph module {" + System.lineSeparator());
-        sourceFiles.forEach(sourceFile -> fileToGraphLine(sourceFile, classToPath, builder));
-        builder.append("}" + System.lineSeparator());
-        return builder.toString();
-    }
-
-    private static void fileToGraphLine(SourceFile sourceFile, Map<String, String> classToPath, StringBuilder builder) {
-        String path = sourceFile.path.toString();
-        if (sourceFile.imports.isEmpty()) {
-            builder.append("  \"" + path + "\";" + System.lineSeparator());
-        } else {
-            for (String anImport : sourceFile.imports) {
-                String pathToImport = classToPath.get(anImport);
-                if (pathToImport != null) {
-                    builder.append("  \"" + path + "\" -> \"" + pathToImport + "\";" + System.lineSeparator());
+    /**
+     * Computes the transitive impact of a whole change set in a single walk of the module.
+     * Unlike the single file queries, paths missing from the module do not throw but are reported in the result.
+     */
+    public ChangeSetImpact getImpactOfChangeSet(Collection<Path> changed) {
+        return getImpactOfChangeSet(changed, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Same as {@link #getImpactOfChangeSet(Collection)} but stops after {@code maxDepth} hops from the changed files.
+     */
+    public ChangeSetImpact getImpactOfChangeSet(Collection<Path> changed, int maxDepth) {
+        if (maxDepth < 0) {
+            throw new IllegalArgumentException(String.format("Depth must be positive or zero (%d).", maxDepth));
+        }
+        int[] queue = new int[paths.length];
+        BitSet changedFiles = new BitSet(queue.length);
+        List<Path> unknownPaths = new ArrayList<>();
+        int sources = 0;
+        for (Path path : changed) {
+            int changedFile = indexOf(path);
+            if (changedFile < 0) {
+                unknownPaths.add(path);
+            } else if (!changedFiles.get(changedFile)) {
+                changedFiles.set(changedFile);
+                queue[sources++] = changedFile;
+            }
+        }
+        int reached = traverseDependents(queue, sources, maxDepth);
+        List<SourceFile> impactedFiles = new ArrayList<>(reached - sources);
+        for (int i = sources; i < reached; i++) {
+            impactedFiles.add(sourceFile(queue[i]));
+        }
+        return new ChangeSetImpact(impactedFiles, unknownPaths);
+    }
+
+    /**
+     * Groups the source files into strongly connected components, revealing the import cycles of the module.
+     */
+    public Condensation getCondensation() {
+        return Condensation.of(layout());
+    }
+
+    /**
+     * Layers the source files into build waves and finds the critical path of the module.
+     */
+    public BuildLayers getBuildLayers() {
+        return BuildLayers.of(getCondensation());
+    }
+
+    /**
+     * Breadth-first walk of the reverse edges.
+     * The first {@code sources} entries of {@code queue} are the starting files, the queue must be large enough to
+     * hold every file of the module.
+     *
+     * @return The number of entries in the queue once the walk is over, the reached files being stored after the
+     * sources in order of distance.
+     */
+    private int traverseDependents(int[] queue, int sources, int maxDepth) {
+        BitSet visited = new BitSet(queue.length);
+        for (int i = 0; i < sources; i++) {
+            visited.set(queue[i]);
+        }
+        int head = 0;
+        int tail = sources;
+        int depth = 0;
+        while (head < tail && depth < maxDepth) {
+            int levelEnd = tail;
+            while (head < levelEnd) {
+                int file = queue[head++];
+                for (int i = dependentOffsets[file]; i < dependentOffsets[file + 1]; i++) {
+                    int importer = dependents[i];
+                    if (!visited.get(importer)) {
+                        visited.set(importer);
+                        queue[tail++] = importer;
+                    }
                 }
             }
+            depth++;
         }
+        return tail;
     }
 
-    private static class ModuleSerializer implements JsonSerializer<Module> {
-        @Override
-        public JsonElement serialize(Module module, Type type, JsonSerializationContext jsonSerializationContext) {
-            JsonObject object = new JsonObject();
-            JsonArray array = new JsonArray(module.sourceFiles.size());
-            for (SourceFile file : module.sourceFiles) {
-                JsonObject objectFile = new JsonObject();
-                objectFile.addProperty("path", file.path.toString());
-                JsonArray classArray = new JsonArray();
-                file.classes.forEach(classArray::add);
-                objectFile.add("classes", classArray);
-                JsonArray importArray = new JsonArray();
-                file.imports.forEach(importArray::add);
-                objectFile.add("imports", importArray);
-                array.add(objectFile);
+    /**
+     * Finds a source file from its absolute path, as recorded during analysis, or from a path relative to a parent
+     * directory of the source files, such as the root of the repository.
+     *
+     * @return The position of the source file in the module, -1 if it cannot be found.
+     */
+    int indexOf(Path path) {
+        PathIndex index = pathIndex;
+        if (index == null) {
+            synchronized (this) {
+                index = pathIndex;
+                if (index == null) {
+                    index = new PathIndex(symbols, paths);
+                    pathIndex = index;
+                }
             }
-            object.add("files", array);
-            return object;
         }
+        return index.indexOf(path);
+    }
+
+    SourceFile sourceFile(int file) {
+        return new SourceFile(
+                Path.of(symbols.symbol(paths[file])),
+                symbolList(classOffsets, classes, file),
+                symbolList(importOffsets, imports, file)
+        );
+    }
+
+    /**
+     * @return The positions of the files importing a class declared by {@code file}, in ascending order.
+     */
+    int[] dependentsOf(int file) {
+        return Arrays.copyOfRange(dependents, dependentOffsets[file], dependentOffsets[file + 1]);
+    }
+
+    private List<String> symbolList(int[] offsets, int[] values, int file) {
+        List<String> list = new ArrayList<>(offsets[file + 1] - offsets[file]);
+        for (int i = offsets[file]; i < offsets[file + 1]; i++) {
+            list.add(symbols.symbol(values[i]));
+        }
+        return list;
+    }
+
+    @Override
+    public String toString() {
+        StringWriter writer = new StringWriter();
+        try {
+            write(writer);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return writer.toString();
+    }
+
+    /**
+     * Writes the JSON representation of the module, as returned by {@link #toString()}, to a UTF-8 encoded file.
+     * An existing file is replaced at once, so that readers polling it never load half a graph.
+     */
+    public void write(Path path) throws IOException {
+        replace(path, temporary -> {
+            try (Writer writer = new BufferedWriter(new OutputStreamWriter(Files.newOutputStream(temporary), StandardCharsets.UTF_8), WRITE_BUFFER_SIZE)) {
+                write(writer);
+            }
+        });
+    }
+
+    /**
+     * Writes the JSON representation of the module to a gzip file, compressing it as it is streamed.
+     * The file is loaded by {@link #of(Path)} like an uncompressed one and replaced at once like by {@link #write(Path)}.
+     */
+    public void writeCompressed(Path path) throws IOException {
+        replace(path, temporary -> {
+            try (Writer writer = new BufferedWriter(new OutputStreamWriter(
+                    new GZIPOutputStream(Files.newOutputStream(temporary), WRITE_BUFFER_SIZE), StandardCharsets.UTF_8), WRITE_BUFFER_SIZE)) {
+                write(writer);
+            }
+        });
+    }
+
+    private interface PathWriter {
+        void write(Path path) throws IOException;
+    }
+
+    private static void replace(Path path, PathWriter writer) throws IOException {
+        Path temporary = path.resolveSibling(path.getFileName() + ".tmp");
+        try {
+            writer.write(temporary);
+            try {
+                Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    /**
+     * Writes the module in the binary format loaded by {@link #map(Path)}.
+     * An existing file is replaced at once rather than overwritten, as modules mapped from it keep reading it.
+     */
+    public void writeBinary(Path path) throws IOException {
+        BinaryModuleFormat.write(layout(), path);
+    }
+
+    ModuleLayout layout() {
+        return new ModuleLayout(symbols, paths,
+                classOffsets, classes,
+                importOffsets, imports,
+                declaringFile,
+                dependencyOffsets, dependencies,
+                dependentOffsets, dependents);
+    }
+
+    /**
+     * Streams the JSON representation of the module, as returned by {@link #toString()}, one token at a time.
+     */
+    public void write(Writer out) throws IOException {
+        JsonWriter writer = new JsonWriter(out);
+        // Matches the escaping applied by Gson#toJson
+        writer.setHtmlSafe(true);
+        writer.beginObject();
+        writer.name("files");
+        writer.beginArray();
+        for (int file = 0; file < paths.length; file++) {
+            writeSourceFile(writer, file);
+        }
+        writer.endArray();
+        writer.endObject();
+        writer.flush();
+    }
+
+    void writeSourceFile(JsonWriter writer, int file) throws IOException {
+        writer.beginObject();
+        writer.name("path").value(symbols.symbol(paths[file]));
+        writer.name("classes");
+        writeSymbols(writer, classOffsets, classes, file);
+        writer.name("imports");
+        writeSymbols(writer, importOffsets, imports, file);
+        writer.endObject();
+    }
+
+    private void writeSymbols(JsonWriter writer, int[] offsets, int[] values, int file) throws IOException {
+        writer.beginArray();
+        for (int i = offsets[file]; i < offsets[file + 1]; i++) {
+            writer.value(symbols.symbol(values[i]));
+        }
+        writer.endArray();
+    }
+
+    public String toDot() {
+        StringWriter writer = new StringWriter();
+        try {
+            writeDot(writer, DotGranularity.FILE);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return writer.toString();
+    }
+
+    /**
+     * Streams the module as a DOT document, either file by file as {@link #toDot()} does or aggregated into
+     * package or directory clusters with weighted edges.
+     */
+    public void writeDot(Writer out, DotGranularity granularity) throws IOException {
+        new DotWriter(layout(), out).write(granularity);
     }
 }
@@ -0,0 +1,162 @@
+/*
+ * Copyright (C) 2023 Dorian Burihabwa
+ * This code is released under [MIT No Attribution](https://opensource.org/licenses/MIT-0) license.
+ */
+package com.burihabwa.source.graph;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * Accumulates source files into the interned, int-indexed layout backing {@link Module}.
+ */
+final class ModuleBuilder {
+    private final SymbolTable symbols = new SymbolTable();
+    private final IntList paths = new IntList();
+    private final IntList classOffsets = new IntList();
+    private final IntList classes = new IntList();
+    private final IntList importOffsets = new IntList();
+    private final IntList imports = new IntList();
+
+    ModuleBuilder() {
+        classOffsets.add(0);
+        importOffsets.add(0);
+    }
+
+    ModuleBuilder addSourceFile(SourceFile sourceFile) {
+        return addSourceFile(sourceFile.path.toString(), sourceFile.classes, sourceFile.imports);
+    }
+
+    ModuleBuilder addSourceFile(String path, Collection<String> declaredClasses, Collection<String> importedClasses) {
+        paths.add(symbols.intern(path));
+        for (String clazz : declaredClasses) {
+            classes.add(symbols.intern(clazz));
+        }
+        classOffsets.add(classes.size());
+        for (String anImport : importedClasses) {
+            imports.add(symbols.intern(anImport));
+        }
+        importOffsets.add(imports.size());
+        return this;
+    }
+
+    /**
+     * Appends the source files of another builder, re-interning its symbols into this one.
+     * Each distinct string of {@code other} is interned once, whatever the number of files referencing it.
+     */
+    ModuleBuilder addAll(ModuleBuilder other) {
+        int[] symbolMapping = new int[other.symbols.size()];
+        for (int symbol = 0; symbol < symbolMapping.length; symbol++) {
+            symbolMapping[symbol] = symbols.intern(other.symbols.symbol(symbol));
+        }
+        int classBase = classes.size();
+        int importBase = imports.size();
+        for (int file = 0; file < other.paths.size(); file++) {
+            paths.add(symbolMapping[other.paths.get(file)]);
+            classOffsets.add(classBase + other.classOffsets.get(file + 1));
+            importOffsets.add(importBase + other.importOffsets.get(file + 1));
+        }
+        for (int i = 0; i < other.classes.size(); i++) {
+            classes.add(symbolMapping[other.classes.get(i)]);
+        }
+        for (int i = 0; i < other.imports.size(); i++) {
+            imports.add(symbolMapping[other.imports.get(i)]);
+        }
+        return this;
+    }
+
+    Module build() {
+        return new Module(layout());
+    }
+
+    /**
+     * Resolves the imports of the source files added so far into forward and reverse edges.
+     */
+    ModuleLayout layout() {
+        int[] filePaths = paths.toArray();
+        int[] fileClassOffsets = classOffsets.toArray();
+        int[] fileClasses = classes.toArray();
+        int[] fileImportOffsets = importOffsets.toArray();
+        int[] fileImports = imports.toArray();
+
+        int[] declaredByOffsets = new int[symbols.size() + 1];
+        int[] declaredBy = groupBySymbol(fileClassOffsets, fileClasses, declaredByOffsets);
+        int[] declaringFile = new int[symbols.size()];
+        for (int symbol = 0; symbol < declaringFile.length; symbol++) {
+            int end = declaredByOffsets[symbol + 1];
+            declaringFile[symbol] = declaredByOffsets[symbol] == end ? -1 : declaredBy[end - 1];
+        }
+
+        int[] dependencyOffsets = new int[filePaths.length + 1];
+        int[] dependencies = resolveImports(fileImportOffsets, fileImports, declaredByOffsets, declaredBy, dependencyOffsets);
+        int[] dependentOffsets = new int[filePaths.length + 1];
+        int[] dependents = transpose(dependencyOffsets, dependencies, dependentOffsets);
+        return new ModuleLayout(symbols, filePaths,
+                fileClassOffsets, fileClasses,
+                fileImportOffsets, fileImports,
+                declaringFile,
+                dependencyOffsets, dependencies,
+                dependentOffsets, dependents);
+    }
+
+    /**
+     * Inverts a file to symbol relation into a symbol to files one, files being listed in ascending order.
+     */
+    private int[] groupBySymbol(int[] fileOffsets, int[] fileSymbols, int[] symbolOffsets) {
+        for (int symbol : fileSymbols) {
+            symbolOffsets[symbol + 1]++;
+        }
+        for (int symbol = 0; symbol < symbols.size(); symbol++) {
+            symbolOffsets[symbol + 1] += symbolOffsets[symbol];
+        }
+        int[] next = Arrays.copyOf(symbolOffsets, symbols.size());
+        int[] files = new int[fileSymbols.length];
+        for (int file = 0; file < fileOffsets.length - 1; file++) {
+            for (int i = fileOffsets[file]; i < fileOffsets[file + 1]; i++) {
+                files[next[fileSymbols[i]]++] = file;
+            }
+        }
+        return files;
+    }
+
+    private static int[] resolveImports(int[] importOffsets, int[] imports, int[] declaredByOffsets, int[] declaredBy, int[] dependencyOffsets) {
+        int files = importOffsets.length - 1;
+        IntList edges = new IntList(imports.length);
+        int[] lastSeenBy = new int[files];
+        Arrays.fill(lastSeenBy, -1);
+        for (int file = 0; file < files; file++) {
+            int rowStart = edges.size();
+            for (int i = importOffsets[file]; i < importOffsets[file + 1]; i++) {
+                int symbol = imports[i];
+                for (int j = declaredByOffsets[symbol]; j < declaredByOffsets[symbol + 1]; j++) {
+                    int dependency = declaredBy[j];
+                    if (lastSeenBy[dependency] != file) {
+                        lastSeenBy[dependency] = file;
+                        edges.add(dependency);
+                    }
+                }
+            }
+            edges.sort(rowStart, edges.size());
+            dependencyOffsets[file + 1] = edges.size();
+        }
+        return edges.toArray();
+    }
+
+    static int[] transpose(int[] offsets, int[] targets, int[] transposedOffsets) {
+        int nodes = offsets.length - 1;
+        for (int target : targets) {
+            transposedOffsets[target + 1]++;
+        }
+        for (int node = 0; node < nodes; node++) {
+            transposedOffsets[node + 1] += transposedOffsets[node];
+        }
+        int[] next = Arrays.copyOf(transposedOffsets, nodes);
+        int[] transposed = new int[targets.length];
+        for (int node = 0; node < nodes; node++) {
+            for (int i = offsets[node]; i < offsets[node + 1]; i++) {
+                transposed[next[targets[i]]++] = node;
+            }
+        }
+        return transposed;
+    }
+}
@@ -0,0 +1,467 @@
+/*
+ * Copyright (C) 2023 Dorian Burihabwa
+ * This code is released under [MIT No Attribution](https://opensource.org/licenses/MIT-0) license.
+ */
+package com.burihabwa.source.graph;
+
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+import com.google.gson.stream.MalformedJsonException;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+/**
+ * Structural changes between two snapshots of a module.
+ * <p>
+ * Files are matched by path. The diff records the removed files, the full content of the added and modified files and
+ * the position of the added files, which is enough to rebuild the later snapshot from the earlier one with
+ * {@link #applyTo(Module)}. The
+ * dependencies gained and lost and the new import cycles are derived from them, for review.
+ */
+public class ModuleDiff {
+    public final List<Path> addedFiles;
+    /**
+     * Position of each added file among the files of the later snapshot, in the order of {@link #addedFiles}.
+     */
+    public final List<Integer> addedPositions;
+    public final List<Path> removedFiles;
+    /**
+     * Added files and files whose classes or imports changed, as found in the later snapshot.
+     */
+    public final List<SourceFile> changedFiles;
+    public final List<Dependency> addedDependencies;
+    public final List<Dependency> removedDependencies;
+    /**
+     * Import cycles of the later snapshot whose files were not already all part of a single cycle.
+     */
+    public final List<List<Path>> newCycles;
+
+    public ModuleDiff(List<Path> addedFiles, List<Integer> addedPositions, List<Path> removedFiles,
+                      List<SourceFile> changedFiles, List<Dependency> addedDependencies,
+                      List<Dependency> removedDependencies, List<List<Path>> newCycles) {
+        if (!addedPositions.isEmpty() && addedPositions.size() != addedFiles.size()) {
+            throw new IllegalArgumentException(String.format("Expected %d added file positions (%d).", addedFiles.size(), addedPositions.size()));
+        }
+        this.addedFiles = Collections.unmodifiableList(addedFiles);
+        this.addedPositions = Collections.unmodifiableList(addedPositions);
+        this.removedFiles = Collections.unmodifiableList(removedFiles);
+        this.changedFiles = Collections.unmodifiableList(changedFiles);
+        this.addedDependencies = Collections.unmodifiableList(addedDependencies);
+        this.removedDependencies = Collections.unmodifiableList(removedDependencies);
+        this.newCycles = Collections.unmodifiableList(newCycles);
+    }
+
+    public static ModuleDiff between(Path before, Path after) throws IOException {
+        return between(Module.of(before), Module.of(after));
+    }
+
+    /**
+     * Compares two snapshots in time linear in their files, imports and dependencies.
+     */
+    public static ModuleDiff between(Module before, Module after) {
+        ModuleLayout old = before.layout();
+        ModuleLayout current = after.layout();
+        int[] newToOld = matchFiles(old, current);
+        int[] oldToNew = new int[old.paths.length];
+        Arrays.fill(oldToNew, -1);
+        for (int file = 0; file < newToOld.length; file++) {
+            if (newToOld[file] >= 0) {
+                oldToNew[newToOld[file]] = file;
+            }
+        }
+
+        List<Path> addedFiles = new ArrayList<>();
+        List<Integer> addedPositions = new ArrayList<>();
+        List<SourceFile> changedFiles = new ArrayList<>();
+        for (int file = 0; file < newToOld.length; file++) {
+            int oldFile = newToOld[file];
+            if (oldFile < 0) {
+                addedFiles.add(path(current, file));
+                addedPositions.add(file);
+                changedFiles.add(after.sourceFile(file));
+            } else if (!sameSymbols(old, old.classOffsets, old.classes, oldFile, current, current.classOffsets, current.classes, file)
+                    || !sameSymbols(old, old.importOffsets, old.imports, oldFile, current, current.importOffsets, current.imports, file)) {
+                changedFiles.add(after.sourceFile(file));
+            }
+        }
+        List<Path> removedFiles = new ArrayList<>();
+        for (int file = 0; file < oldToNew.length; file++) {
+            if (oldToNew[file] < 0) {
+                removedFiles.add(path(old, file));
+            }
+        }
+
+        List<Dependency> addedDependencies = new ArrayList<>();
+        List<Dependency> removedDependencies = new ArrayList<>();
+        int[] seenBy = new int[newToOld.length];
+        Arrays.fill(seenBy, -1);
+        for (int file = 0; file < newToOld.length; file++) {
+            int oldFile = newToOld[file];
+            if (oldFile >= 0) {
+                for (int i = old.dependencyOffsets[oldFile]; i < old.dependencyOffsets[oldFile + 1]; i++) {
+                    int dependency = oldToNew[old.dependencies[i]];
+                    if (dependency >= 0) {
+                        seenBy[dependency] = file;
+                    }
+                }
+            }
+            for (int i = current.dependencyOffsets[file]; i < current.dependencyOffsets[file + 1]; i++) {
+                int dependency = current.dependencies[i];
+                if (seenBy[dependency] != file) {
+                    addedDependencies.add(new Dependency(path(current, file), path(current, dependency)));
+                }
+            }
+        }
+        Arrays.fill(seenBy, -1);
+        for (int oldFile = 0; oldFile < oldToNew.length; oldFile++) {
+            int file = oldToNew[oldFile];
+            if (file >= 0) {
+                for (int i = current.dependencyOffsets[file]; i < current.dependencyOffsets[file + 1]; i++) {
+                    seenBy[current.dependencies[i]] = file;
+                }
+            }
+            for (int i = old.dependencyOffsets[oldFile]; i < old.dependencyOffsets[oldFile + 1]; i++) {
+                int dependency = old.dependencies[i];
+                if (file < 0 || oldToNew[dependency] < 0 || seenBy[oldToNew[dependency]] != file) {
+                    removedDependencies.add(new Dependency(path(old, oldFile), path(old, dependency)));
+                }
+            }
+        }
+
+        return new ModuleDiff(addedFiles, addedPositions, removedFiles, changedFiles, addedDependencies,
+                removedDependencies, newCycles(Condensation.of(old), Condensation.of(current), newToOld));
+    }
+
+    /**
+     * @return The position in {@code old} of every file of {@code current}, -1 for the files it does not have.
+     */
+    private static int[] matchFiles(ModuleLayout old, ModuleLayout current) {
+        SymbolTable oldPaths = new SymbolTable(old.paths.length);
+        int[] fileOfPath = new int[old.paths.length];
+        for (int file = 0; file < old.paths.length; file++) {
+            fileOfPath[oldPaths.intern(old.symbols.symbol(old.paths[file]))] = file;
+        }
+        int[] newToOld = new int[current.paths.length];
+        for (int file = 0; file < newToOld.length; file++) {
+            int path = oldPaths.idOf(current.symbols.symbol(current.paths[file]));
+            newToOld[file] = path == SymbolTable.NOT_FOUND ? -1 : fileOfPath[path];
+        }
+        return newToOld;
+    }
+
+    private static boolean sameSymbols(ModuleLayout old, int[] oldOffsets, int[] oldValues, int oldFile,
+                                       ModuleLayout current, int[] offsets, int[] values, int file) {
+        int length = offsets[file + 1] - offsets[file];
+        if (oldOffsets[oldFile + 1] - oldOffsets[oldFile] != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            String oldSymbol = old.symbols.symbol(oldValues[oldOffsets[oldFile] + i]);
+            if (!oldSymbol.equals(current.symbols.symbol(values[offsets[file] + i]))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static List<List<Path>> newCycles(Condensation old, Condensation current, int[] newToOld) {
+        int[] oldComponentOf = new int[old.members.length];
+        for (int component = 0; component < old.size(); component++) {
+            for (int i = old.memberOffsets[component]; i < old.memberOffsets[component + 1]; i++) {
+                oldComponentOf[old.members[i]] = component;
+            }
+        }
+        List<List<Path>> cycles = new ArrayList<>();
+        for (int component = 0; component < current.size(); component++) {
+            if (!current.isCycle(component)) {
+                continue;
+            }
+            int oldComponent = -1;
+            boolean known = true;
+            for (int i = current.memberOffsets[component]; i < current.memberOffsets[component + 1] && known; i++) {
+                int oldFile = newToOld[current.members[i]];
+                if (oldFile < 0) {
+                    known = false;
+                } else if (oldComponent < 0) {
+                    oldComponent = oldComponentOf[oldFile];
+                    known = old.isCycle(oldComponent);
+                } else {
+                    known = oldComponentOf[oldFile] == oldComponent;
+                }
+            }
+            if (!known) {
+                cycles.add(current.files(component));
+            }
+        }
+        return cycles;
+    }
+
+    private static Path path(ModuleLayout layout, int file) {
+        return Path.of(layout.symbols.symbol(layout.paths[file]));
+    }
+
+    public boolean isEmpty() {
+        return removedFiles.isEmpty() && changedFiles.isEmpty();
+    }
+
+    /**
+     * Rebuilds the later snapshot from the earlier one, files included in the same order.
+     * Modified files keep their position and added files are inserted at theirs. Added files of a delta written without
+     * their positions come last, in the order of the diff.
+     */
+    public Module applyTo(Module before) {
+        Set<Path> removed = new HashSet<>(removedFiles);
+        Map<Path, SourceFile> changed = new LinkedHashMap<>();
+        for (SourceFile sourceFile : changedFiles) {
+            changed.put(sourceFile.path, sourceFile);
+        }
+        List<SourceFile> files = new ArrayList<>(before.size() + changed.size());
+        for (int file = 0; file < before.size(); file++) {
+            SourceFile sourceFile = before.sourceFile(file);
+            if (removed.contains(sourceFile.path)) {
+                continue;
+            }
+            SourceFile replacement = changed.remove(sourceFile.path);
+            files.add(replacement == null ? sourceFile : replacement);
+        }
+        if (addedPositions.isEmpty()) {
+            files.addAll(changed.values());
+            return new Module(files);
+        }
+        // Positions increase along the added files, so each insertion lands before the files that follow it
+        List<SourceFile> rebuilt = new ArrayList<>(files.size() + changed.size());
+        int kept = 0;
+        for (int i = 0; i < addedFiles.size(); i++) {
+            int position = addedPositions.get(i);
+            while (rebuilt.size() < position && kept < files.size()) {
+                rebuilt.add(files.get(kept++));
+            }
+            SourceFile added = changed.remove(addedFiles.get(i));
+            if (added == null) {
+                throw new IllegalArgumentException(String.format("Added file has no content in the diff (%s).", addedFiles.get(i)));
+            }
+            rebuilt.add(added);
+        }
+        rebuilt.addAll(files.subList(kept, files.size()));
+        rebuilt.addAll(changed.values());
+        return new Module(rebuilt);
+    }
+
+    @Override
+    public String toString() {
+        StringWriter writer = new StringWriter();
+        try {
+            write(writer);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return writer.toString();
+    }
+
+    /**
+     * Writes the delta, as returned by {@link #toString()}, to a UTF-8 encoded file.
+     */
+    public void write(Path path) throws IOException {
+        try (Writer writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
+            write(writer);
+        }
+    }
+
+    /**
+     * Streams the delta as JSON. Dependencies are written as {@code [from, to]} pairs of paths.
+     */
+    public void write(Writer out) throws IOException {
+        JsonWriter writer = new JsonWriter(out);
+        writer.setHtmlSafe(true);
+        writer.beginObject();
+        writer.name("added");
+        writePaths(writer, addedFiles);
+        writer.name("addedPositions");
+        writer.beginArray();
+        for (int position : addedPositions) {
+            writer.value(position);
+        }
+        writer.endArray();
+        writer.name("removed");
+        writePaths(writer, removedFiles);
+        writer.name("files");
+        writer.beginArray();
+        for (SourceFile sourceFile : changedFiles) {
+            writer.beginObject();
+            writer.name("path").value(sourceFile.path.toString());
+            writer.name("classes");
+            writeStrings(writer, sourceFile.classes);
+            writer.name("imports");
+            writeStrings(writer, sourceFile.imports);
+            writer.endObject();
+        }
+        writer.endArray();
+        writer.name("addedDependencies");
+        writeDependencies(writer, addedDependencies);
+        writer.name("removedDependencies");
+        writeDependencies(writer, removedDependencies);
+        writer.name("newCycles");
+        writer.beginArray();
+        for (List<Path> cycle : newCycles) {
+            writePaths(writer, cycle);
+        }
+        writer.endArray();
+        writer.endObject();
+        writer.flush();
+    }
+
+    private static void writePaths(JsonWriter writer, List<Path> paths) throws IOException {
+        writer.beginArray();
+        for (Path path : paths) {
+            writer.value(path.toString());
+        }
+        writer.endArray();
+    }
+
+    private static void writeStrings(JsonWriter writer, List<String> values) throws IOException {
+        writer.beginArray();
+        for (String value : values) {
+            writer.value(value);
+        }
+        writer.endArray();
+    }
+
+    private static void writeDependencies(JsonWriter writer, List<Dependency> dependencies) throws IOException {
+        writer.beginArray();
+        for (Dependency dependency : dependencies) {
+            writer.beginArray();
+            writer.value(dependency.from.toString());
+            writer.value(dependency.to.toString());
+            writer.endArray();
+        }
+        writer.endArray();
+    }
+
+    public static ModuleDiff read(Path delta) throws IOException {
+        try (Reader reader = Files.newBufferedReader(delta, StandardCharsets.UTF_8)) {
+            return read(reader);
+        }
+    }
+
+    /**
+     * Loads a delta written by {@link #write(Writer)}, unknown fields being skipped.
+     */
+    public static ModuleDiff read(Reader in) throws IOException {
+        JsonReader reader = new JsonReader(in);
+        List<Path> addedFiles = new ArrayList<>();
+        List<Integer> addedPositions = new ArrayList<>();
+        List<Path> removedFiles = new ArrayList<>();
+        List<SourceFile> changedFiles = new ArrayList<>();
+        List<Dependency> addedDependencies = new ArrayList<>();
+        List<Dependency> removedDependencies = new ArrayList<>();
+        List<List<Path>> newCycles = new ArrayList<>();
+        try {
+            reader.beginObject();
+            while (reader.hasNext()) {
+                switch (reader.nextName()) {
+                    case "added":
+                        readPaths(reader, addedFiles);
+                        break;
+                    case "addedPositions":
+                        reader.beginArray();
+                        while (reader.hasNext()) {
+                            addedPositions.add(reader.nextInt());
+                        }
+                        reader.endArray();
+                        break;
+                    case "removed":
+                        readPaths(reader, removedFiles);
+                        break;
+                    case "files":
+                        reader.beginArray();
+                        while (reader.hasNext()) {
+                            changedFiles.add(readSourceFile(reader));
+                        }
+                        reader.endArray();
+                        break;
+                    case "addedDependencies":
+                        readDependencies(reader, addedDependencies);
+                        break;
+                    case "removedDependencies":
+                        readDependencies(reader, removedDependencies);
+                        break;
+                    case "newCycles":
+                        reader.beginArray();
+                        while (reader.hasNext()) {
+                            List<Path> cycle = new ArrayList<>();
+                            readPaths(reader, cycle);
+                            newCycles.add(cycle);
+                        }
+                        reader.endArray();
+                        break;
+                    default:
+                        reader.skipValue();
+                }
+            }
+            reader.endObject();
+        } catch (MalformedJsonException | IllegalStateException | NumberFormatException e) {
+            throw new JsonSyntaxException(e);
+        }
+        return new ModuleDiff(addedFiles, addedPositions, removedFiles, changedFiles, addedDependencies, removedDependencies, newCycles);
+    }
+
+    private static SourceFile readSourceFile(JsonReader reader) throws IOException {
+        String path = null;
+        List<String> classes = new ArrayList<>();
+        List<String> imports = new ArrayList<>();
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "path":
+                    path = reader.nextString();
+                    break;
+                case "classes":
+                    readStrings(reader, classes);
+                    break;
+                case "imports":
+                    readStrings(reader, imports);
+                    break;
+                default:
+                    reader.skipValue();
+            }
+        }
+        reader.endObject();
+        if (path == null) {
+            throw new JsonSyntaxException(String.format("Source file without a path (%s).", reader.getPath()));
+        }
+        return new SourceFile(Path.of(path), classes, imports);
+    }
+
+    private static void readPaths(JsonReader reader, List<Path> paths) throws IOException {
+        reader.beginArray();
+        while (reader.hasNext()) {
+            paths.add(Path.of(reader.nextString()));
+        }
+        reader.endArray();
+    }
+
+    private static void readStrings(JsonReader reader, List<String> values) throws IOException {
+        reader.beginArray();
+        while (reader.hasNext()) {
+            values.add(reader.nextString());
+        }
+        reader.endArray();
+    }
+
+    private static void readDependencies(JsonReader reader, List<Dependency> dependencies) throws IOException {
+        reader.beginArray();
+        while (reader.hasNext()) {
+            reader.beginArray();
+            Path from = Path.of(reader.nextString());
+            Path to = Path.of(reader.nextString());
+            reader.endArray();
+            dependencies.add(new Dependency(from, to));
+        }
+        reader.endArray();
+    }
+}
@@ -0,0 +1,56 @@
+/*
+ * Copyright (C) 2023 Dorian Burihabwa
+ * This code is released under [MIT No Attribution](https://opensource.org/licenses/MIT-0) license.
+ */
+package com.burihabwa.source.graph;
+
+/**
+ * The arrays backing a {@link Module}, as computed by {@link ModuleBuilder} or read from a binary graph file.
+ * <p>
+ * Source files are identified by their position in the module. Per-file lists are stored in compressed sparse row
+ * form: the entries of file {@code i} are found in {@code values[offsets[i]..offsets[i + 1]]}.
+ */
+final class ModuleLayout {
+    final Symbols symbols;
+    /**
+     * Symbol id of the path of each source file.
+     */
+    final int[] paths;
+    final int[] classOffsets;
+    final int[] classes;
+    final int[] importOffsets;
+    final int[] imports;
+    /**
+     * For every symbol, the last source file declaring it as a class, -1 when no file does.
+     */
+    final int[] declaringFile;
+    /**
+     * Forward edges: the files declaring a class imported by a file, ascending and without duplicates.
+     */
+    final int[] dependencyOffsets;
+    final int[] dependencies;
+    /**
+     * Reverse edges: the files importing a class declared by a file, ascending and without duplicates.
+     */
+    final int[] dependentOffsets;
+    final int[] dependents;
+
+    ModuleLayout(Symbols symbols, int[] paths,
+                 int[] classOffsets, int[] classes,
+                 int[] importOffsets, int[] imports,
+                 int[] declaringFile,
+                 int[] dependencyOffsets, int[] dependencies,
+                 int[] dependentOffsets, int[] dependents) {
+        this.symbols = symbols;
+        this.paths = paths;
+        this.classOffsets = classOffsets;
+        this.classes = classes;
+        this.importOffsets = importOffsets;
+        this.imports = imports;
+        this.declaringFile = declaringFile;
+        this.dependencyOffsets = dependencyOffsets;
+        this.dependencies = dependencies;
+        this.dependentOffsets = dependentOffsets;
+        this.dependents = dependents;
+    }
+}
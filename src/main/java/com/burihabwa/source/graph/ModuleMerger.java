@@ -0,0 +1,87 @@
+/*
+ * Copyright (C) 2023 Dorian Burihabwa
+ * This code is released under [MIT No Attribution](https://opensource.org/licenses/MIT-0) license.
+ */
+package com.burihabwa.source.graph;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Merges the graphs of the modules of a project into a single module, so that imports are resolved across modules.
+ * <p>
+ * Graphs are parsed concurrently, each one into its own symbol table, and folded in order into a project-wide table.
+ * A string shared by several modules is only kept once, and a parsed module is released as soon as it is merged.
+ * At most two graphs per thread are parsed ahead of the merge, which bounds memory use whatever the number of modules.
+ */
+public final class ModuleMerger {
+    private static final int READ_BUFFER_SIZE = 1 << 16;
+
+    private ModuleMerger() {
+    }
+
+    /**
+     * @return The source files of all the graphs, in the order of the graphs.
+     */
+    public static Module merge(List<Path> graphs, int parallelism) throws IOException {
+        if (parallelism <= 0) {
+            throw new IllegalArgumentException(String.format("Parallelism must be positive (%d).", parallelism));
+        }
+        int window = 2 * parallelism;
+        ExecutorService executor = Executors.newFixedThreadPool(parallelism);
+        try {
+            ModuleBuilder project = new ModuleBuilder();
+            Deque<Future<ModuleBuilder>> pending = new ArrayDeque<>(window);
+            int submitted = 0;
+            for (Path graph : graphs) {
+                while (submitted < graphs.size() && pending.size() < window) {
+                    Path next = graphs.get(submitted++);
+                    pending.add(executor.submit(() -> load(next)));
+                }
+                project.addAll(await(pending.poll(), graph));
+            }
+            return project.build();
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static ModuleBuilder load(Path graph) {
+        try (Reader reader = new BufferedReader(new InputStreamReader(Module.open(graph), StandardCharsets.UTF_8), READ_BUFFER_SIZE)) {
+            return Module.read(reader, new ModuleBuilder());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static ModuleBuilder await(Future<ModuleBuilder> future, Path graph) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException(String.format("Interrupted while loading %s.", graph));
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof UncheckedIOException) {
+                throw ((UncheckedIOException) cause).getCause();
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IOException(String.format("Could not load %s.", graph), cause);
+        }
+    }
+}
@@ -0,0 +1,126 @@
+/*
+ * Copyright (C) 2023 Dorian Burihabwa
+ * This code is released under [MIT No Attribution](https://opensource.org/licenses/MIT-0) license.
+ */
+package com.burihabwa.source.graph;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Constant time lookup of source files by path.
+ * <p>
+ * Paths are compared in a normalized form ({@code /} separators, no {@code .}, {@code ..} or empty segments) and are
+ * never resolved against the working directory. A relative path is matched against the recorded paths by prefixing it
+ * with each ancestor of their common directory, an absolute one by stripping its leading segments, so the number of
+ * probes is bounded by the depth of the paths rather than by the size of the module.
+ */
+final class PathIndex {
+    private final SymbolTable normalizedPaths;
+    /**
+     * First source file recorded under each normalized path.
+     */
+    private final int[] files;
+    /**
+     * Longest directory prefix, ending with {@code /}, shared by every recorded path.
+     */
+    private final String commonPrefix;
+
+    PathIndex(Symbols symbols, int[] paths) {
+        normalizedPaths = new SymbolTable(paths.length);
+        IntList filesByPath = new IntList(paths.length);
+        String prefix = null;
+        for (int file = 0; file < paths.length; file++) {
+            String normalized = normalize(symbols.symbol(paths[file]));
+            if (normalizedPaths.intern(normalized) == filesByPath.size()) {
+                filesByPath.add(file);
+            }
+            prefix = prefix == null ? directoryOf(normalized) : commonDirectory(prefix, normalized);
+        }
+        files = filesByPath.toArray();
+        commonPrefix = prefix == null ? "" : prefix;
+    }
+
+    /**
+     * @return The position of the source file matching the path, -1 if there is none.
+     */
+    int indexOf(Path path) {
+        String normalized = normalize(path.toString());
+        int file = lookup(normalized);
+        if (file >= 0) {
+            return file;
+        }
+        if (path.isAbsolute() || normalized.startsWith("/")) {
+            for (int slash = normalized.indexOf('/'); slash >= 0; slash = normalized.indexOf('/', slash + 1)) {
+                file = lookup(normalized.substring(slash + 1));
+                if (file >= 0) {
+                    return file;
+                }
+            }
+        } else {
+            for (int end = commonPrefix.length(); end > 0; end = commonPrefix.lastIndexOf('/', end - 2) + 1) {
+                file = lookup(commonPrefix.substring(0, end) + normalized);
+                if (file >= 0) {
+                    return file;
+                }
+            }
+        }
+        return -1;
+    }
+
+    private int lookup(String normalized) {
+        int id = normalizedPaths.idOf(normalized);
+        return id == SymbolTable.NOT_FOUND ? -1 : files[id];
+    }
+
+    private static String directoryOf(String path) {
+        return path.substring(0, path.lastIndexOf('/') + 1);
+    }
+
+    private static String commonDirectory(String directory, String path) {
+        int length = Math.min(directory.length(), path.length());
+        int i = 0;
+        while (i < length && directory.charAt(i) == path.charAt(i)) {
+            i++;
+        }
+        return i == directory.length() ? directory : directory.substring(0, directory.lastIndexOf('/', i - 1) + 1);
+    }
+
+    /**
+     * Normalizes a path without touching the file system, returning the same instance when it is already normal.
+     */
+    static String normalize(String path) {
+        String unified = path.replace('\\', '/');
+        if (!needsNormalization(unified)) {
+            return unified;
+        }
+        boolean absolute = unified.startsWith("/");
+        List<String> segments = new ArrayList<>();
+        for (String segment : unified.split("/")) {
+            if (segment.isEmpty() || segment.equals(".")) {
+                continue;
+            }
+            boolean canGoUp = !segments.isEmpty() && !segments.get(segments.size() - 1).equals("..");
+            if (segment.equals("..") && canGoUp) {
+                segments.remove(segments.size() - 1);
+            } else if (!segment.equals("..") || !absolute) {
+                segments.add(segment);
+            }
+        }
+        return (absolute ? "/" : "") + String.join("/", segments);
+    }
+
+    private static boolean needsNormalization(String path) {
+        return path.contains("//") ||
+                path.contains("/./") ||
+                path.contains("/../") ||
+                path.startsWith("./") ||
+                path.startsWith("../") ||
+                path.equals(".") ||
+                path.equals("..") ||
+                path.endsWith("/.") ||
+                path.endsWith("/..") ||
+                (path.length() > 1 && path.endsWith("/"));
+    }
+}
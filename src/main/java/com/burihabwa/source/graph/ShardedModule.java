@@ -0,0 +1,465 @@
+/*
+ * Copyright (C) 2023 Dorian Burihabwa
+ * This code is released under [MIT No Attribution](https://opensource.org/licenses/MIT-0) license.
+ */
+package com.burihabwa.source.graph;
+
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+import com.google.gson.stream.MalformedJsonException;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+/**
+ * Module split into shards on disk, of which only the ones reached by a query are loaded.
+ * <p>
+ * The source files of a directory, that is of a package, always land in the same shard, picked by hashing the
+ * directory. Shards are written as {@code shard-<n>.json}, in the format of {@link Module#write(Writer)} plus the
+ * position of each file in the whole module and the shards holding its importers. A {@code manifest.json} lists the
+ * shard of every directory and, for every package, the shards declaring its classes. Classes nested in a class are
+ * listed under their outer class, as their name leaves no way to tell them apart from a package. Opening a sharded
+ * module only reads the manifest: a query loads the shard of the file it starts from and the shards it is pointed to.
+ * <p>
+ * Queries answer the same files, in the same order, as the matching {@link Module} queries. Shards are kept in memory
+ * once loaded, so that the cost of a walk reaching the whole module ends up close to the one of loading it.
+ */
+public final class ShardedModule {
+    static final String MANIFEST = "manifest.json";
+    private static final int READ_BUFFER_SIZE = 1 << 16;
+    private static final int WRITE_BUFFER_SIZE = 1 << 16;
+
+    private final Path directory;
+    private final int size;
+    private final PathIndex directoryIndex;
+    private final int[] directoryShards;
+    private final Map<String, int[]> declaringShards;
+    private final Shard[] shards;
+
+    private ShardedModule(Path directory, int size, PathIndex directoryIndex, int[] directoryShards,
+                          Map<String, int[]> declaringShards, int shardCount) {
+        this.directory = directory;
+        this.size = size;
+        this.directoryIndex = directoryIndex;
+        this.directoryShards = directoryShards;
+        this.declaringShards = declaringShards;
+        this.shards = new Shard[shardCount];
+    }
+
+    /**
+     * Writes a module as {@code shardCount} shards and their manifest into a directory, removing the shards left over
+     * by a previous layout with more shards. The manifest is written last.
+     */
+    public static void write(Module module, Path directory, int shardCount) throws IOException {
+        if (shardCount <= 0) {
+            throw new IllegalArgumentException(String.format("Shard count must be positive (%d).", shardCount));
+        }
+        Files.createDirectories(directory);
+        IntList[] filesByShard = new IntList[shardCount];
+        for (int shard = 0; shard < shardCount; shard++) {
+            filesByShard[shard] = new IntList();
+        }
+        int[] shardOf = new int[module.size()];
+        Map<String, Integer> directories = new TreeMap<>();
+        Map<String, BitSet> packages = new TreeMap<>();
+        for (int file = 0; file < module.size(); file++) {
+            SourceFile sourceFile = module.sourceFile(file);
+            String fileDirectory = directoryOf(sourceFile.path);
+            int shard = Math.floorMod(fileDirectory.hashCode(), shardCount);
+            directories.put(fileDirectory, shard);
+            filesByShard[shard].add(file);
+            shardOf[file] = shard;
+            for (String clazz : sourceFile.classes) {
+                packages.computeIfAbsent(packageOf(clazz), key -> new BitSet()).set(shard);
+            }
+        }
+        for (int shard = 0; shard < shardCount; shard++) {
+            writeShard(module, filesByShard[shard], shardOf, shardFile(directory, shard));
+        }
+        for (int shard = shardCount; Files.deleteIfExists(shardFile(directory, shard)); shard++) {
+            // Shards of a previous layout
+        }
+        try (JsonWriter writer = newWriter(directory.resolve(MANIFEST))) {
+            writer.beginObject();
+            writer.name("shards").value(shardCount);
+            writer.name("files").value(module.size());
+            writer.name("directories");
+            writer.beginObject();
+            for (Map.Entry<String, Integer> entry : directories.entrySet()) {
+                writer.name(entry.getKey()).value(entry.getValue());
+            }
+            writer.endObject();
+            writer.name("packages");
+            writer.beginObject();
+            for (Map.Entry<String, BitSet> entry : packages.entrySet()) {
+                writer.name(entry.getKey());
+                writeShardList(writer, entry.getValue());
+            }
+            writer.endObject();
+            writer.endObject();
+        }
+    }
+
+    private static void writeShard(Module module, IntList files, int[] shardOf, Path shardFile) throws IOException {
+        try (JsonWriter writer = newWriter(shardFile)) {
+            writer.beginObject();
+            writer.name("files");
+            writer.beginArray();
+            for (int i = 0; i < files.size(); i++) {
+                module.writeSourceFile(writer, files.get(i));
+            }
+            writer.endArray();
+            writer.name("indexes");
+            writer.beginArray();
+            for (int i = 0; i < files.size(); i++) {
+                writer.value(files.get(i));
+            }
+            writer.endArray();
+            writer.name("importerShards");
+            writer.beginArray();
+            for (int i = 0; i < files.size(); i++) {
+                BitSet importerShards = new BitSet();
+                for (int importer : module.dependentsOf(files.get(i))) {
+                    importerShards.set(shardOf[importer]);
+                }
+                writeShardList(writer, importerShards);
+            }
+            writer.endArray();
+            writer.endObject();
+        }
+    }
+
+    private static void writeShardList(JsonWriter writer, BitSet shards) throws IOException {
+        writer.beginArray();
+        for (int shard = shards.nextSetBit(0); shard >= 0; shard = shards.nextSetBit(shard + 1)) {
+            writer.value(shard);
+        }
+        writer.endArray();
+    }
+
+    private static JsonWriter newWriter(Path path) throws IOException {
+        JsonWriter writer = new JsonWriter(new BufferedWriter(
+                new OutputStreamWriter(Files.newOutputStream(path), StandardCharsets.UTF_8), WRITE_BUFFER_SIZE));
+        writer.setHtmlSafe(true);
+        return writer;
+    }
+
+    /**
+     * Opens a directory written by {@link #write(Module, Path, int)}, reading its manifest only.
+     */
+    public static ShardedModule open(Path directory) throws IOException {
+        int shardCount = -1;
+        int size = -1;
+        SymbolTable directories = new SymbolTable();
+        IntList directoryShards = new IntList();
+        Map<String, int[]> declaringShards = new HashMap<>();
+        try (JsonReader reader = new JsonReader(new BufferedReader(
+                new InputStreamReader(Module.open(directory.resolve(MANIFEST)), StandardCharsets.UTF_8), READ_BUFFER_SIZE))) {
+            reader.beginObject();
+            while (reader.hasNext()) {
+                switch (reader.nextName()) {
+                    case "shards":
+                        shardCount = reader.nextInt();
+                        break;
+                    case "files":
+                        size = reader.nextInt();
+                        break;
+                    case "directories":
+                        reader.beginObject();
+                        while (reader.hasNext()) {
+                            directories.intern(reader.nextName());
+                            directoryShards.add(reader.nextInt());
+                        }
+                        reader.endObject();
+                        break;
+                    case "packages":
+                        reader.beginObject();
+                        while (reader.hasNext()) {
+                            declaringShards.put(reader.nextName(), readInts(reader));
+                        }
+                        reader.endObject();
+                        break;
+                    default:
+                        reader.skipValue();
+                }
+            }
+            reader.endObject();
+        } catch (MalformedJsonException | IllegalStateException | NumberFormatException e) {
+            throw new JsonSyntaxException(e);
+        }
+        if (shardCount <= 0 || size < 0) {
+            throw new JsonSyntaxException(String.format("Manifest without a shard or file count (%s).", directory));
+        }
+        int[] directoryIds = new int[directories.size()];
+        for (int id = 0; id < directoryIds.length; id++) {
+            directoryIds[id] = id;
+        }
+        return new ShardedModule(directory, size, new PathIndex(directories, directoryIds), directoryShards.toArray(),
+                declaringShards, shardCount);
+    }
+
+    private static int[] readInts(JsonReader reader) throws IOException {
+        IntList values = new IntList();
+        reader.beginArray();
+        while (reader.hasNext()) {
+            values.add(reader.nextInt());
+        }
+        reader.endArray();
+        return values.toArray();
+    }
+
+    /**
+     * @return The number of source files in the module.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return The number of shards loaded so far.
+     */
+    public synchronized int loadedShards() {
+        int loaded = 0;
+        for (Shard shard : shards) {
+            if (shard != null) {
+                loaded++;
+            }
+        }
+        return loaded;
+    }
+
+    public List<SourceFile> getSourceFilesImpactedByChangeOf(Path changed) {
+        return sourceFiles(dependents(find(changed)));
+    }
+
+    /**
+     * Lists the source files declaring the classes imported by a file, in the order of the module.
+     */
+    public List<SourceFile> getDependenciesOf(Path file) {
+        ShardedFile source = find(file);
+        TreeMap<Integer, ShardedFile> dependencies = new TreeMap<>();
+        for (String anImport : source.sourceFile().imports) {
+            for (int shardNumber : declaringShards.getOrDefault(packageOf(anImport), new int[0])) {
+                Shard shard = shard(shardNumber);
+                for (int local : shard.declaringFiles.getOrDefault(anImport, new int[0])) {
+                    dependencies.putIfAbsent(shard.indexes[local], new ShardedFile(shard, local));
+                }
+            }
+        }
+        return sourceFiles(dependencies.values());
+    }
+
+    /**
+     * Lists the source files that depend, directly or through other source files, on the changed file.
+     * The result is ordered by distance to the changed file: direct importers come first, then their importers...
+     */
+    public List<SourceFile> getSourceFilesTransitivelyImpactedByChangeOf(Path changed) {
+        return getSourceFilesTransitivelyImpactedByChangeOf(changed, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Same as {@link #getSourceFilesTransitivelyImpactedByChangeOf(Path)} but stops after {@code maxDepth} hops,
+     * a depth of 1 listing the direct importers only.
+     */
+    public List<SourceFile> getSourceFilesTransitivelyImpactedByChangeOf(Path changed, int maxDepth) {
+        if (maxDepth < 0) {
+            throw new IllegalArgumentException(String.format("Depth must be positive or zero (%d).", maxDepth));
+        }
+        ShardedFile changedFile = find(changed);
+        BitSet visited = new BitSet(size);
+        visited.set(changedFile.index());
+        List<ShardedFile> queue = new ArrayList<>();
+        queue.add(changedFile);
+        int head = 0;
+        int depth = 0;
+        while (head < queue.size() && depth < maxDepth) {
+            int levelEnd = queue.size();
+            while (head < levelEnd) {
+                for (ShardedFile importer : dependents(queue.get(head++))) {
+                    if (!visited.get(importer.index())) {
+                        visited.set(importer.index());
+                        queue.add(importer);
+                    }
+                }
+            }
+            depth++;
+        }
+        return sourceFiles(queue.subList(1, queue.size()));
+    }
+
+    /**
+     * @return The files importing a class declared by {@code file}, in the order of the module.
+     */
+    private Collection<ShardedFile> dependents(ShardedFile file) {
+        TreeMap<Integer, ShardedFile> dependents = new TreeMap<>();
+        List<String> classes = file.sourceFile().classes;
+        for (int shardNumber : file.shard.importerShards[file.local]) {
+            Shard shard = shard(shardNumber);
+            for (String clazz : classes) {
+                for (int local : shard.importingFiles.getOrDefault(clazz, new int[0])) {
+                    dependents.putIfAbsent(shard.indexes[local], new ShardedFile(shard, local));
+                }
+            }
+        }
+        return dependents.values();
+    }
+
+    private ShardedFile find(Path path) {
+        Path parent = path.getParent();
+        int directoryId = directoryIndex.indexOf(parent == null ? Path.of("") : parent);
+        if (directoryId >= 0) {
+            Shard shard = shard(directoryShards[directoryId]);
+            int local = shard.module.indexOf(path);
+            if (local >= 0) {
+                return new ShardedFile(shard, local);
+            }
+        }
+        throw new UnknownSourceFileException(path);
+    }
+
+    private synchronized Shard shard(int number) {
+        Shard shard = shards[number];
+        if (shard == null) {
+            try {
+                shard = Shard.read(shardFile(directory, number));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            shards[number] = shard;
+        }
+        return shard;
+    }
+
+    private static List<SourceFile> sourceFiles(Collection<ShardedFile> files) {
+        List<SourceFile> sourceFiles = new ArrayList<>(files.size());
+        for (ShardedFile file : files) {
+            sourceFiles.add(file.sourceFile());
+        }
+        return sourceFiles;
+    }
+
+    private static Path shardFile(Path directory, int shard) {
+        return directory.resolve("shard-" + shard + ".json");
+    }
+
+    private static String directoryOf(Path path) {
+        String normalized = PathIndex.normalize(path.toString());
+        return normalized.substring(0, Math.max(normalized.lastIndexOf('/'), 0));
+    }
+
+    private static String packageOf(String qualifiedName) {
+        return qualifiedName.substring(0, Math.max(qualifiedName.lastIndexOf('.'), 0));
+    }
+
+    /**
+     * Source files of a shard, with their position in the whole module, the shards holding their importers and the
+     * files declaring and importing each class.
+     */
+    private static final class Shard {
+        private final Module module;
+        private final int[] indexes;
+        private final int[][] importerShards;
+        private final Map<String, int[]> declaringFiles;
+        private final Map<String, int[]> importingFiles;
+
+        private Shard(Module module, int[] indexes, int[][] importerShards) {
+            if (indexes.length != module.size() || importerShards.length != module.size()) {
+                throw new JsonSyntaxException(String.format("Shard with %d files, %d indexes and %d importer lists.",
+                        module.size(), indexes.length, importerShards.length));
+            }
+            this.module = module;
+            this.indexes = indexes;
+            this.importerShards = importerShards;
+            Map<String, IntList> declaring = new HashMap<>();
+            Map<String, IntList> importing = new HashMap<>();
+            for (int local = 0; local < module.size(); local++) {
+                SourceFile sourceFile = module.sourceFile(local);
+                for (String clazz : sourceFile.classes) {
+                    addLast(declaring.computeIfAbsent(clazz, key -> new IntList()), local);
+                }
+                for (String anImport : sourceFile.imports) {
+                    addLast(importing.computeIfAbsent(anImport, key -> new IntList()), local);
+                }
+            }
+            declaringFiles = toArrays(declaring);
+            importingFiles = toArrays(importing);
+        }
+
+        private static void addLast(IntList files, int file) {
+            if (files.size() == 0 || files.get(files.size() - 1) != file) {
+                files.add(file);
+            }
+        }
+
+        private static Map<String, int[]> toArrays(Map<String, IntList> lists) {
+            Map<String, int[]> arrays = new HashMap<>(lists.size() * 2);
+            lists.forEach((name, files) -> arrays.put(name, files.toArray()));
+            return arrays;
+        }
+
+        private static Shard read(Path shardFile) throws IOException {
+            ModuleBuilder builder = new ModuleBuilder();
+            IntList indexes = new IntList();
+            List<int[]> importerShards = new ArrayList<>();
+            List<String> classes = new ArrayList<>();
+            List<String> imports = new ArrayList<>();
+            try (JsonReader reader = new JsonReader(new BufferedReader(
+                    new InputStreamReader(Module.open(shardFile), StandardCharsets.UTF_8), READ_BUFFER_SIZE))) {
+                reader.beginObject();
+                while (reader.hasNext()) {
+                    switch (reader.nextName()) {
+                        case "files":
+                            reader.beginArray();
+                            while (reader.hasNext()) {
+                                Module.readSourceFile(reader, builder, classes, imports);
+                            }
+                            reader.endArray();
+                            break;
+                        case "indexes":
+                            reader.beginArray();
+                            while (reader.hasNext()) {
+                                indexes.add(reader.nextInt());
+                            }
+                            reader.endArray();
+                            break;
+                        case "importerShards":
+                            reader.beginArray();
+                            while (reader.hasNext()) {
+                                importerShards.add(readInts(reader));
+                            }
+                            reader.endArray();
+                            break;
+                        default:
+                            reader.skipValue();
+                    }
+                }
+                reader.endObject();
+            } catch (MalformedJsonException | IllegalStateException | NumberFormatException e) {
+                throw new JsonSyntaxException(e);
+            }
+            return new Shard(builder.build(), indexes.toArray(), importerShards.toArray(new int[0][]));
+        }
+    }
+
+    private static final class ShardedFile {
+        private final Shard shard;
+        private final int local;
+
+        private ShardedFile(Shard shard, int local) {
+            this.shard = shard;
+            this.local = local;
+        }
+
+        private int index() {
+            return shard.indexes[local];
+        }
+
+        private SourceFile sourceFile() {
+            return shard.module.sourceFile(local);
+        }
+    }
+}
@@ -7,6 +7,7 @@ package com.burihabwa.source.graph;
 import java.nio.file.Path;
 import java.util.Collections;
 import java.util.List;
+import java.util.Objects;
 
 public class SourceFile {
     public final Path path;
@@ -18,4 +19,26 @@ public class SourceFile {
         this.classes = Collections.unmodifiableList(classes);
         this.imports = Collections.unmodifiableList(imports);
     }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        SourceFile that = (SourceFile) o;
+        return path.equals(that.path) && classes.equals(that.classes) && imports.equals(that.imports);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(path, classes, imports);
+    }
+
+    @Override
+    public String toString() {
+        return path.toString();
+    }
 }
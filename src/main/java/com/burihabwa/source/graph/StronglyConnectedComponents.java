@@ -0,0 +1,82 @@
+/*
+ * Copyright (C) 2023 Dorian Burihabwa
+ * This code is released under [MIT No Attribution](https://opensource.org/licenses/MIT-0) license.
+ */
+package com.burihabwa.source.graph;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * Tarjan's strongly connected components algorithm over a graph in compressed sparse row form.
+ * <p>
+ * The depth-first search keeps its own stack of nodes and edge cursors instead of recursing, so that long import
+ * chains cannot overflow the thread stack. It runs in O(nodes + edges) time with a handful of int arrays.
+ */
+final class StronglyConnectedComponents {
+    private StronglyConnectedComponents() {
+    }
+
+    /**
+     * Components are numbered in the order Tarjan's algorithm completes them: a node only reaches components with a
+     * number lower than or equal to its own.
+     *
+     * @return The component of every node.
+     */
+    static int[] componentOf(int[] offsets, int[] targets) {
+        int nodes = offsets.length - 1;
+        int[] index = new int[nodes];
+        Arrays.fill(index, -1);
+        int[] lowLink = new int[nodes];
+        int[] cursor = new int[nodes];
+        int[] callStack = new int[nodes];
+        int[] stack = new int[nodes];
+        BitSet onStack = new BitSet(nodes);
+        int[] component = new int[nodes];
+        int visited = 0;
+        int components = 0;
+        int stackSize = 0;
+        for (int root = 0; root < nodes; root++) {
+            if (index[root] >= 0) {
+                continue;
+            }
+            int depth = 0;
+            index[root] = lowLink[root] = visited++;
+            cursor[root] = offsets[root];
+            callStack[depth++] = root;
+            stack[stackSize++] = root;
+            onStack.set(root);
+            while (depth > 0) {
+                int node = callStack[depth - 1];
+                if (cursor[node] < offsets[node + 1]) {
+                    int target = targets[cursor[node]++];
+                    if (index[target] < 0) {
+                        index[target] = lowLink[target] = visited++;
+                        cursor[target] = offsets[target];
+                        callStack[depth++] = target;
+                        stack[stackSize++] = target;
+                        onStack.set(target);
+                    } else if (onStack.get(target)) {
+                        lowLink[node] = Math.min(lowLink[node], index[target]);
+                    }
+                    continue;
+                }
+                depth--;
+                if (lowLink[node] == index[node]) {
+                    int member;
+                    do {
+                        member = stack[--stackSize];
+                        onStack.clear(member);
+                        component[member] = components;
+                    } while (member != node);
+                    components++;
+                }
+                if (depth > 0) {
+                    int parent = callStack[depth - 1];
+                    lowLink[parent] = Math.min(lowLink[parent], lowLink[node]);
+                }
+            }
+        }
+        return component;
+    }
+}
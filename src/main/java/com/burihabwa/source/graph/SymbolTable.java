@@ -0,0 +1,96 @@
+/*
+ * Copyright (C) 2023 Dorian Burihabwa
+ * This code is released under [MIT No Attribution](https://opensource.org/licenses/MIT-0) license.
+ */
+package com.burihabwa.source.graph;
+
+import java.util.Arrays;
+
+/**
+ * Dictionary handing out dense int ids, in insertion order, to the paths and fully qualified names of a module.
+ * Each distinct string is stored once and looked up through an open-addressing table of ids, so no boxed
+ * integer or map entry is allocated per symbol.
+ */
+final class SymbolTable implements Symbols {
+    static final int NOT_FOUND = -1;
+
+    private String[] symbols;
+    private int size;
+    /**
+     * Open-addressing table holding {@code id + 1} for every symbol, 0 marking an empty slot.
+     */
+    private int[] slots;
+
+    SymbolTable() {
+        this(16);
+    }
+
+    SymbolTable(int expectedSize) {
+        symbols = new String[Math.max(expectedSize, 4)];
+        slots = new int[tableSizeFor(symbols.length)];
+    }
+
+    int intern(String symbol) {
+        int slot = slotOf(symbol);
+        if (slots[slot] != 0) {
+            return slots[slot] - 1;
+        }
+        if (size == symbols.length) {
+            symbols = Arrays.copyOf(symbols, size * 2);
+        }
+        symbols[size] = symbol;
+        slots[slot] = ++size;
+        if (size * 2 > slots.length) {
+            rehash();
+        }
+        return size - 1;
+    }
+
+    int idOf(String symbol) {
+        return slots[slotOf(symbol)] - 1;
+    }
+
+    @Override
+    public String symbol(int id) {
+        if (id < 0 || id >= size) {
+            throw new IndexOutOfBoundsException(String.format("Unknown symbol id (%d).", id));
+        }
+        return symbols[id];
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    private int slotOf(String symbol) {
+        int mask = slots.length - 1;
+        int slot = mix(symbol.hashCode()) & mask;
+        while (slots[slot] != 0 && !symbols[slots[slot] - 1].equals(symbol)) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private void rehash() {
+        slots = new int[slots.length * 2];
+        int mask = slots.length - 1;
+        for (int id = 0; id < size; id++) {
+            int slot = mix(symbols[id].hashCode()) & mask;
+            while (slots[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            slots[slot] = id + 1;
+        }
+    }
+
+    private static int mix(int hash) {
+        int h = hash * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    private static int tableSizeFor(int capacity) {
+        int tableSize = Integer.highestOneBit(capacity * 2 - 1) << 1;
+        return Math.max(tableSize, 8);
+    }
+}
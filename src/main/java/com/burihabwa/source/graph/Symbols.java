@@ -0,0 +1,14 @@
+/*
+ * Copyright (C) 2023 Dorian Burihabwa
+ * This code is released under [MIT No Attribution](https://opensource.org/licenses/MIT-0) license.
+ */
+package com.burihabwa.source.graph;
+
+/**
+ * Read access to the strings referenced by id from a {@link Module}.
+ */
+interface Symbols {
+    String symbol(int id);
+
+    int size();
+}
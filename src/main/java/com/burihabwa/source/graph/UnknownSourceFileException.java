@@ -0,0 +1,18 @@
+/*
+ * Copyright (C) 2023 Dorian Burihabwa
+ * This code is released under [MIT No Attribution](https://opensource.org/licenses/MIT-0) license.
+ */
+package com.burihabwa.source.graph;
+
+import java.nio.file.Path;
+
+/**
+ * Thrown by the queries of a module when a path matches none of its source files.
+ */
+public class UnknownSourceFileException extends IllegalArgumentException {
+    private static final long serialVersionUID = 1L;
+
+    public UnknownSourceFileException(Path path) {
+        super(String.format("Path to source file cannot be found in source set (%s).", path));
+    }
+}
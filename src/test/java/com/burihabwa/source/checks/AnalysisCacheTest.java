@@ -0,0 +1,62 @@
+/*
+ * Copyright (C) 2023 Dorian Burihabwa
+ * This code is released under [MIT No Attribution](https://opensource.org/licenses/MIT-0) license.
+ */
+package com.burihabwa.source.checks;
+
+import com.burihabwa.source.graph.SourceFile;
+import org.junit.jupiter.api.Test;
+import org.sonar.plugins.java.api.ModuleScannerContext;
+
+import java.lang.reflect.Proxy;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AnalysisCacheTest {
+    @Test
+    void entries_restore_the_extracted_source_file() {
+        Path path = Path.of("src/main/java/org/example/Child.java");
+        byte[] entry = AnalysisCache.encode(List.of("org.example.Child"), List.of("org.example.Base", "java.util.List"));
+
+        SourceFile sourceFile = AnalysisCache.decode(path, entry, new SymbolPool());
+
+        assertThat(sourceFile).isEqualTo(new SourceFile(path, List.of("org.example.Child"), List.of("org.example.Base", "java.util.List")));
+    }
+
+    @Test
+    void entries_share_the_names_of_the_pool() {
+        SymbolPool symbols = new SymbolPool();
+        String base = symbols.intern("org.example.Base");
+        byte[] entry = AnalysisCache.encode(List.of("org.example.Child"), List.of("org.example.Base"));
+
+        SourceFile sourceFile = AnalysisCache.decode(Path.of("Child.java"), entry, symbols);
+
+        assertThat(sourceFile.imports.get(0)).isSameAs(base);
+    }
+
+    @Test
+    void entries_from_another_version_are_ignored() {
+        byte[] entry = AnalysisCache.encode(Collections.emptyList(), Collections.emptyList());
+        entry[0] = 42;
+
+        assertThat(AnalysisCache.decode(Path.of("A.java"), entry, new SymbolPool())).isNull();
+        assertThat(AnalysisCache.decode(Path.of("A.java"), new byte[0], new SymbolPool())).isNull();
+    }
+
+    @Test
+    void no_entry_is_kept_without_the_cache_of_the_runtime() {
+        // A context without any cache context
+        ModuleScannerContext context = (ModuleScannerContext) Proxy.newProxyInstance(
+                getClass().getClassLoader(), new Class<?>[]{ModuleScannerContext.class}, (proxy, method, args) -> null);
+        AnalysisCache cache = AnalysisCache.of(context);
+
+        cache.write("key", new byte[]{1, 2, 3});
+
+        assertThat(cache.isEnabled()).isFalse();
+        assertThat(cache.contains("key")).isFalse();
+        assertThat(cache.read("key")).isNull();
+    }
+}
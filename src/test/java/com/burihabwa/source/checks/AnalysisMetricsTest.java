@@ -0,0 +1,64 @@
+/*
+ * Copyright (C) 2023 Dorian Burihabwa
+ * This code is released under [MIT No Attribution](https://opensource.org/licenses/MIT-0) license.
+ */
+package com.burihabwa.source.checks;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AnalysisMetricsTest {
+    @Test
+    void histogram_buckets_values_by_power_of_two() {
+        AnalysisMetrics.Histogram histogram = new AnalysisMetrics.Histogram();
+        for (long value : new long[]{0, 1, 2, 3, 4, 7, 8, 1_000}) {
+            histogram.record(value);
+        }
+
+        assertThat(histogram.count()).isEqualTo(8);
+        assertThat(histogram.bucket(0)).isEqualTo(1);
+        assertThat(histogram.bucket(1)).isEqualTo(1);
+        assertThat(histogram.bucket(2)).isEqualTo(2);
+        assertThat(histogram.bucket(3)).isEqualTo(2);
+        assertThat(histogram.bucket(4)).isEqualTo(1);
+        assertThat(histogram.bucket(10)).isEqualTo(1);
+    }
+
+    @Test
+    void keeps_the_slowest_files_slowest_first() {
+        AnalysisMetrics metrics = new AnalysisMetrics();
+        for (int i = 0; i < 100; i++) {
+            metrics.recordFile(Path.of("F" + i + ".java"), (i * 37 % 100) * 1_000L, new AnalysisMetrics.Sample(), 1, 2);
+        }
+
+        assertThat(metrics.slowestFiles())
+                .hasSize(AnalysisMetrics.SLOWEST_FILES)
+                .startsWith(Path.of("F27.java"), Path.of("F54.java"), Path.of("F81.java"));
+    }
+
+    @Test
+    void writes_a_json_report() throws IOException {
+        AnalysisMetrics metrics = new AnalysisMetrics();
+        AnalysisMetrics.Sample sample = new AnalysisMetrics.Sample();
+        sample.treeVisitNanos = 3_000;
+        sample.importExtractionNanos = 1_000;
+        metrics.recordFile(Path.of("A.java"), 5_000, sample, 1, 3);
+        metrics.recordCachedFile();
+        metrics.recordEndOfAnalysis(2, 7_000_000, 512);
+        StringWriter writer = new StringWriter();
+
+        metrics.write(writer);
+
+        assertThat(writer.toString())
+                .startsWith("{\"files\":{\"parsed\":1,\"cached\":1,\"collected\":2},")
+                .contains("\"visitNodeMicros\":{\"count\":1,\"sum\":5,\"max\":5,\"buckets\":[{\"upTo\":7,\"count\":1}]}")
+                .contains("\"importsPerFile\":{\"count\":1,\"sum\":3,\"max\":3,\"buckets\":[{\"upTo\":3,\"count\":1}]}")
+                .contains("\"endOfAnalysis\":{\"serializationMillis\":7,\"bytesWritten\":512}")
+                .endsWith("\"slowestFiles\":[{\"path\":\"A.java\",\"micros\":5}]}");
+    }
+}
@@ -7,15 +7,26 @@
  */
 package com.burihabwa.source.checks;
 
+import com.burihabwa.source.checks.utils.SyntheticCodebase;
+import com.burihabwa.source.graph.Module;
+import com.burihabwa.source.graph.SourceFile;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.io.TempDir;
+import org.sonar.api.batch.fs.InputFile;
 import org.sonar.java.checks.verifier.internal.InternalCheckVerifier;
+import org.sonar.java.checks.verifier.internal.InternalReadCache;
+import org.sonar.java.checks.verifier.internal.InternalWriteCache;
 
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.charset.Charset;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
@@ -69,6 +80,191 @@ class GraphDependencyRuleTest {
         assert_check_builds_expected_graph(check, Path.of("src/test/resources/implementation/module-graph.json"));
     }
 
+    @Test
+    void super_types_declared_in_another_package_are_listed_as_imports() throws IOException {
+        GraphDependencyRule check = new GraphDependencyRule(tempDir);
+        InternalCheckVerifier.newInstance()
+                .onFiles(
+                        "src/test/resources/cross-package/org/example/geometry/Circle.java",
+                        "src/test/resources/cross-package/org/example/shapes/Shape.java"
+                ).withCheck(check)
+                .verifyNoIssues();
+        assert_check_builds_expected_graph(check, Path.of("src/test/resources/cross-package/module-graph.json"));
+    }
+
+    @Test
+    void binary_graph_is_written_next_to_json_graph() throws IOException {
+        GraphDependencyRule check = new GraphDependencyRule(tempDir);
+        InternalCheckVerifier.newInstance()
+                .onFiles(
+                        "src/test/resources/inheritance/Child.java",
+                        "src/test/resources/inheritance/Base.java"
+                ).withCheck(check)
+                .verifyNoIssues();
+        assertThat(check.computePathToBinaryModuleGraph().getParent()).isEqualTo(check.computePathToModuleGraph().getParent());
+        Module module = Module.map(check.computePathToBinaryModuleGraph());
+        assertThat(module).hasToString(Module.of(check.computePathToModuleGraph()).toString());
+    }
+
+    @Test
+    void cycle_report_is_written_next_to_json_graph() throws IOException {
+        GraphDependencyRule check = new GraphDependencyRule(tempDir);
+        InternalCheckVerifier.newInstance()
+                .onFiles(
+                        "src/test/resources/inheritance/Child.java",
+                        "src/test/resources/inheritance/Base.java"
+                ).withCheck(check)
+                .verifyNoIssues();
+        assertThat(check.computePathToCycleReport()).hasContent("{\"components\":[" +
+                "{\"files\":[\"src/test/resources/inheritance/Base.java\"],\"dependencies\":[]}," +
+                "{\"files\":[\"src/test/resources/inheritance/Child.java\"],\"dependencies\":[0]}" +
+                "],\"cycles\":[]}");
+    }
+
+    @Test
+    void layer_report_is_written_next_to_json_graph() throws IOException {
+        GraphDependencyRule check = new GraphDependencyRule(tempDir);
+        InternalCheckVerifier.newInstance()
+                .onFiles(
+                        "src/test/resources/inheritance/Child.java",
+                        "src/test/resources/inheritance/Base.java"
+                ).withCheck(check)
+                .verifyNoIssues();
+        assertThat(check.computePathToLayerReport()).hasContent(Module.of(check.computePathToModuleGraph()).getBuildLayers().toString());
+    }
+
+    @Test
+    void metrics_are_written_next_to_json_graph() throws IOException {
+        GraphDependencyRule check = new GraphDependencyRule(tempDir);
+        InternalCheckVerifier.newInstance()
+                .onFiles(
+                        "src/test/resources/inheritance/Child.java",
+                        "src/test/resources/inheritance/Base.java"
+                ).withCheck(check)
+                .verifyNoIssues();
+        assertThat(check.computePathToMetrics()).content()
+                .startsWith("{\"files\":{\"parsed\":2,\"cached\":0,\"collected\":2},")
+                .contains("\"classesPerFile\":{\"count\":2,\"sum\":2,\"max\":1,")
+                .contains("\"path\":\"src/test/resources/inheritance/Base.java\"");
+    }
+
+    @Test
+    void graph_can_be_written_compressed() throws IOException {
+        GraphDependencyRule check = new GraphDependencyRule(tempDir);
+        check.compressGraph = true;
+        InternalCheckVerifier.newInstance()
+                .onFiles(
+                        "src/test/resources/inheritance/Child.java",
+                        "src/test/resources/inheritance/Base.java"
+                ).withCheck(check)
+                .verifyNoIssues();
+        assertThat(check.computePathToModuleGraph().toString()).endsWith("-graph.json.gz");
+        assertThat(Files.readAllBytes(check.computePathToModuleGraph())).startsWith((byte) 0x1f, (byte) 0x8b);
+        assertThat(Module.of(check.computePathToModuleGraph())).hasToString(Files.readString(Path.of("src/test/resources/inheritance/module-graph.json")));
+    }
+
+    @Test
+    void declarations_only_mode_finds_the_same_local_types() throws IOException {
+        String[] files = {
+                "src/test/resources/local-types/Measurable.java",
+                "src/test/resources/local-types/Outer.java",
+                "src/test/resources/local-types/Shape.java"
+        };
+        GraphDependencyRule fullCheck = new GraphDependencyRule(Files.createDirectories(tempDir.resolve("full")));
+        InternalCheckVerifier.newInstance()
+                .onFiles(files)
+                .withCheck(fullCheck)
+                .verifyNoIssues();
+        GraphDependencyRule fastCheck = new GraphDependencyRule(Files.createDirectories(tempDir.resolve("fast")));
+        fastCheck.declarationsOnly = true;
+        InternalCheckVerifier.newInstance()
+                .onFiles(files)
+                .withCheck(fastCheck)
+                .verifyNoIssues();
+
+        Module full = Module.of(fullCheck.computePathToModuleGraph());
+        assertThat(Module.of(fastCheck.computePathToModuleGraph())).hasToString(full.toString());
+        assertThat(full.getSourceFilesImpactedByChangeOf(Path.of("src/test/resources/local-types/Shape.java")))
+                .extracting(sourceFile -> sourceFile.path.toString())
+                .containsExactly("src/test/resources/local-types/Outer.java");
+    }
+
+    @Test
+    void synthetic_codebase_gives_the_generated_graph() throws IOException {
+        SyntheticCodebase codebase = SyntheticCodebase.withSeed(42).files(60).filesPerPackage(10).cycleDensity(0.05);
+        Path sources = Files.createDirectories(tempDir.resolve("sources"));
+        List<String> files = codebase.writeJavaSources(sources).stream().map(Path::toString).collect(Collectors.toList());
+        GraphDependencyRule check = new GraphDependencyRule(tempDir);
+        InternalCheckVerifier.newInstance()
+                .onFiles(files)
+                .withCheck(check)
+                .verifyNoIssues();
+
+        List<SourceFile> expected = new ArrayList<>(codebase.sourceFiles(sources));
+        expected.sort(Comparator.comparing(sourceFile -> sourceFile.path.toString()));
+        assertThat(Module.of(check.computePathToModuleGraph())).hasToString(new Module(expected).toString());
+    }
+
+    @Test
+    void files_skipped_thanks_to_the_cache_are_restored_into_the_graph() throws IOException {
+        Path expected = Path.of("src/test/resources/inheritance/module-graph.json");
+        InternalReadCache firstReadCache = new InternalReadCache();
+        InternalWriteCache firstWriteCache = new InternalWriteCache().bind(firstReadCache);
+        InternalCheckVerifier.newInstance()
+                .addFiles(InputFile.Status.ADDED, "src/test/resources/inheritance/Base.java")
+                .withCache(firstReadCache, firstWriteCache)
+                .withCheck(new GraphDependencyRule(Files.createDirectories(tempDir.resolve("first"))))
+                .verifyNoIssues();
+
+        InternalReadCache secondReadCache = new InternalReadCache().putAll(firstWriteCache);
+        InternalWriteCache secondWriteCache = new InternalWriteCache().bind(secondReadCache);
+        GraphDependencyRule partiallyCached = new GraphDependencyRule(Files.createDirectories(tempDir.resolve("second")));
+        InternalCheckVerifier.newInstance()
+                .addFiles(InputFile.Status.SAME, "src/test/resources/inheritance/Base.java")
+                .addFiles(InputFile.Status.ADDED, "src/test/resources/inheritance/Child.java")
+                .withCache(secondReadCache, secondWriteCache)
+                .withCheck(partiallyCached)
+                .verifyNoIssues();
+        assert_check_builds_expected_graph(partiallyCached, expected);
+        assertThat(partiallyCached.computePathToMetrics()).content().startsWith("{\"files\":{\"parsed\":1,\"cached\":1,\"collected\":2},");
+
+        InternalReadCache thirdReadCache = new InternalReadCache().putAll(secondWriteCache);
+        GraphDependencyRule fullyCached = new GraphDependencyRule(Files.createDirectories(tempDir.resolve("third")));
+        InternalCheckVerifier.newInstance()
+                .addFiles(InputFile.Status.SAME,
+                        "src/test/resources/inheritance/Child.java",
+                        "src/test/resources/inheritance/Base.java")
+                .withCache(thirdReadCache, new InternalWriteCache().bind(thirdReadCache))
+                .withCheck(fullyCached)
+                .verifyNoIssues();
+        assert_check_builds_expected_graph(fullyCached, expected);
+        assertThat(fullyCached.computePathToMetrics()).content().startsWith("{\"files\":{\"parsed\":0,\"cached\":2,\"collected\":2},");
+    }
+
+    @Test
+    void files_whose_cache_entry_cannot_be_decoded_are_parsed_again() throws IOException {
+        InternalReadCache firstReadCache = new InternalReadCache();
+        InternalWriteCache firstWriteCache = new InternalWriteCache().bind(firstReadCache);
+        InternalCheckVerifier.newInstance()
+                .addFiles(InputFile.Status.ADDED, "src/test/resources/inheritance/Base.java")
+                .withCache(firstReadCache, firstWriteCache)
+                .withCheck(new GraphDependencyRule(Files.createDirectories(tempDir.resolve("first"))))
+                .verifyNoIssues();
+        InternalReadCache corruptedReadCache = new InternalReadCache();
+        firstWriteCache.getData().keySet().forEach(key -> corruptedReadCache.put(key, new byte[]{42}));
+
+        GraphDependencyRule check = new GraphDependencyRule(Files.createDirectories(tempDir.resolve("second")));
+        InternalCheckVerifier.newInstance()
+                .addFiles(InputFile.Status.SAME, "src/test/resources/inheritance/Base.java")
+                .addFiles(InputFile.Status.ADDED, "src/test/resources/inheritance/Child.java")
+                .withCache(corruptedReadCache, new InternalWriteCache().bind(corruptedReadCache))
+                .withCheck(check)
+                .verifyNoIssues();
+
+        assert_check_builds_expected_graph(check, Path.of("src/test/resources/inheritance/module-graph.json"));
+        assertThat(check.computePathToMetrics()).content().startsWith("{\"files\":{\"parsed\":2,\"cached\":0,\"collected\":2},");
+    }
+
     private static void assert_check_builds_expected_graph(GraphDependencyRule check, Path pathToExpectedOutput) throws IOException {
         String actual, expected;
         try (InputStream actualIn = new FileInputStream(check.computePathToModuleGraph().toFile());
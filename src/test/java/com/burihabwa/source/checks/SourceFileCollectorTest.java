@@ -0,0 +1,47 @@
+/*
+ * Copyright (C) 2023 Dorian Burihabwa
+ * This code is released under [MIT No Attribution](https://opensource.org/licenses/MIT-0) license.
+ */
+package com.burihabwa.source.checks;
+
+import com.burihabwa.source.graph.SourceFile;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SourceFileCollectorTest {
+    @Test
+    void collects_source_files_from_concurrent_threads_in_path_order() throws Exception {
+        SourceFileCollector collector = new SourceFileCollector();
+        List<SourceFile> expected = new ArrayList<>();
+        for (int i = 0; i < 1_000; i++) {
+            expected.add(new SourceFile(Path.of(String.format("src/File%04d.java", i)), List.of("File" + i), Collections.emptyList()));
+        }
+        List<SourceFile> shuffled = new ArrayList<>(expected);
+        Collections.shuffle(shuffled);
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (SourceFile sourceFile : shuffled) {
+                futures.add(executor.submit(() -> collector.add(sourceFile)));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        assertThat(collector.drain()).containsExactlyElementsOf(expected);
+        assertThat(collector.drain()).isEmpty();
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright (C) 2023 Dorian Burihabwa
+ * This code is released under [MIT No Attribution](https://opensource.org/licenses/MIT-0) license.
+ */
+package com.burihabwa.source.checks;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SymbolPoolTest {
+    @Test
+    void returns_the_first_instance_of_a_name() {
+        SymbolPool symbols = new SymbolPool();
+        String first = new String("org.example.Base");
+
+        assertThat(symbols.intern(first)).isSameAs(first);
+        assertThat(symbols.intern(new String("org.example.Base"))).isSameAs(first);
+        assertThat(symbols.intern("org.example.Child")).isNotSameAs(first);
+        assertThat(symbols.size()).isEqualTo(2);
+    }
+
+    @Test
+    void looks_names_up_from_characters() {
+        SymbolPool symbols = new SymbolPool();
+        String base = symbols.intern("org.example.Base");
+        char[] chars = "org.example.Base and more".toCharArray();
+
+        assertThat(symbols.intern(chars, base.length())).isSameAs(base);
+        String shorter = symbols.intern(chars, 11);
+        assertThat(shorter).isEqualTo("org.example");
+        assertThat(symbols.intern("org.example")).isSameAs(shorter);
+        assertThat(symbols.intern(new char[0], 0)).isEmpty();
+    }
+
+    @Test
+    void keeps_every_name_while_growing() {
+        SymbolPool symbols = new SymbolPool();
+        List<String> names = new ArrayList<>();
+        for (int i = 0; i < 10_000; i++) {
+            names.add(symbols.intern("org.example.p" + (i % 100) + ".C" + i));
+        }
+
+        assertThat(symbols.size()).isEqualTo(10_000);
+        for (int i = 0; i < 10_000; i++) {
+            String name = names.get(i);
+            assertThat(symbols.intern(name.toCharArray(), name.length())).isSameAs(name);
+        }
+    }
+
+    @Test
+    void hands_out_a_single_instance_to_concurrent_threads() throws Exception {
+        SymbolPool symbols = new SymbolPool();
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<List<String>>> futures = new ArrayList<>();
+            for (int thread = 0; thread < 4; thread++) {
+                Callable<List<String>> task = () -> {
+                    List<String> interned = new ArrayList<>();
+                    for (int i = 0; i < 2_000; i++) {
+                        interned.add(symbols.intern("org.example.C" + i));
+                    }
+                    return interned;
+                };
+                futures.add(executor.submit(task));
+            }
+            List<String> first = futures.get(0).get();
+            for (Future<List<String>> future : futures) {
+                List<String> interned = future.get();
+                for (int i = 0; i < interned.size(); i++) {
+                    assertThat(interned.get(i)).isSameAs(first.get(i));
+                }
+            }
+            assertThat(symbols.size()).isEqualTo(2_000);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,243 @@
+/*
+ * Copyright (C) 2023 Dorian Burihabwa
+ * This code is released under [MIT No Attribution](https://opensource.org/licenses/MIT-0) license.
+ */
+package com.burihabwa.source.checks.utils;
+
+import com.burihabwa.source.graph.SourceFile;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Deterministic generator of synthetic codebases, either as source files ready to be put in a module or as a tree of
+ * Java sources to analyze.
+ * <p>
+ * File {@code i} declares {@code C<i>}, an interface for every fifth file and a class otherwise, in package
+ * {@code filesPerPackage} files wide. It imports a number of other files drawn from a geometric distribution, half of
+ * them from its own package. Imports point to earlier files, except for a {@code cycleDensity} share of them that
+ * point to later files and close import cycles. A quarter of the imported files are also statically imported, and
+ * classes extend or implement the first class and interface they import from their own package.
+ * <p>
+ * The same seed and settings always give the same codebase, and {@link #sourceFiles(Path)} lists what the rule
+ * extracts from the tree written by {@link #writeJavaSources(Path)}.
+ */
+public final class SyntheticCodebase {
+    private static final double STATIC_IMPORT_RATE = 0.25;
+
+    private final long seed;
+    private int files = 1_000;
+    private int meanFanOut = 4;
+    private int maxFanOut = 16;
+    private int packageDepth = 3;
+    private int filesPerPackage = 50;
+    private double cycleDensity = 0.02;
+
+    private SyntheticCodebase(long seed) {
+        this.seed = seed;
+    }
+
+    public static SyntheticCodebase withSeed(long seed) {
+        return new SyntheticCodebase(seed);
+    }
+
+    public SyntheticCodebase files(int files) {
+        this.files = files;
+        return this;
+    }
+
+    public SyntheticCodebase fanOut(int mean, int max) {
+        this.meanFanOut = mean;
+        this.maxFanOut = max;
+        return this;
+    }
+
+    public SyntheticCodebase packageDepth(int packageDepth) {
+        this.packageDepth = packageDepth;
+        return this;
+    }
+
+    public SyntheticCodebase filesPerPackage(int filesPerPackage) {
+        this.filesPerPackage = filesPerPackage;
+        return this;
+    }
+
+    /**
+     * @param cycleDensity Share of the imports pointing to a later file, 0 giving an acyclic codebase.
+     */
+    public SyntheticCodebase cycleDensity(double cycleDensity) {
+        this.cycleDensity = cycleDensity;
+        return this;
+    }
+
+    public List<SourceFile> sourceFiles() {
+        return sourceFiles(Path.of(""));
+    }
+
+    /**
+     * @return The source files of the codebase, their paths being resolved against {@code root}.
+     */
+    public List<SourceFile> sourceFiles(Path root) {
+        List<SourceFile> sourceFiles = new ArrayList<>(files);
+        for (GeneratedFile file : generate()) {
+            List<String> imports = new ArrayList<>();
+            for (int target : file.imports) {
+                imports.add(className(target));
+            }
+            for (int target : file.staticImports) {
+                imports.add(className(target) + "." + constantName(target));
+            }
+            if (file.superClass >= 0) {
+                imports.add(className(file.superClass));
+            }
+            if (file.superInterface >= 0) {
+                imports.add(className(file.superInterface));
+            }
+            sourceFiles.add(new SourceFile(root.resolve(relativePath(file.index)), List.of(className(file.index)), imports));
+        }
+        return sourceFiles;
+    }
+
+    /**
+     * Writes one Java file per source file under {@code root}, following the Maven layout.
+     *
+     * @return The paths of the written files, in the order of {@link #sourceFiles(Path)}.
+     */
+    public List<Path> writeJavaSources(Path root) throws IOException {
+        List<Path> written = new ArrayList<>(files);
+        for (GeneratedFile file : generate()) {
+            Path path = root.resolve(relativePath(file.index));
+            Files.createDirectories(path.getParent());
+            Files.writeString(path, javaSource(file), StandardCharsets.UTF_8);
+            written.add(path);
+        }
+        return written;
+    }
+
+    private String javaSource(GeneratedFile file) {
+        StringBuilder source = new StringBuilder()
+                .append("package ").append(packageName(file.index)).append(";\n\n");
+        for (int target : file.imports) {
+            source.append("import ").append(className(target)).append(";\n");
+        }
+        for (int target : file.staticImports) {
+            source.append("import static ").append(className(target)).append('.').append(constantName(target)).append(";\n");
+        }
+        source.append('\n');
+        String simpleName = "C" + file.index;
+        if (isInterface(file.index)) {
+            source.append("public interface ").append(simpleName).append(" {\n")
+                    .append("    int ").append(constantName(file.index)).append(" = ").append(file.index).append(";\n");
+        } else {
+            source.append("public class ").append(simpleName);
+            if (file.superClass >= 0) {
+                source.append(" extends C").append(file.superClass);
+            }
+            if (file.superInterface >= 0) {
+                source.append(" implements C").append(file.superInterface);
+            }
+            source.append(" {\n")
+                    .append("    public static final int ").append(constantName(file.index)).append(" = ").append(file.index).append(";\n");
+        }
+        return source.append("}\n").toString();
+    }
+
+    private List<GeneratedFile> generate() {
+        Random random = new Random(seed);
+        double continuation = meanFanOut / (meanFanOut + 1.0);
+        BitSet picked = new BitSet(files);
+        List<GeneratedFile> generated = new ArrayList<>(files);
+        for (int index = 0; index < files; index++) {
+            GeneratedFile file = new GeneratedFile(index);
+            int fanOut = 0;
+            while (fanOut < maxFanOut && random.nextDouble() < continuation) {
+                fanOut++;
+            }
+            for (int i = 0; i < fanOut; i++) {
+                int target = pickTarget(random, index);
+                if (target < 0 || target == index || picked.get(target)) {
+                    continue;
+                }
+                picked.set(target);
+                file.imports.add(target);
+                if (random.nextDouble() < STATIC_IMPORT_RATE) {
+                    file.staticImports.add(target);
+                }
+                boolean inheritable = target < index && packageOf(target) == packageOf(index) && !isInterface(index);
+                if (inheritable && isInterface(target) && file.superInterface < 0) {
+                    file.superInterface = target;
+                } else if (inheritable && !isInterface(target) && file.superClass < 0) {
+                    file.superClass = target;
+                }
+            }
+            file.imports.forEach(picked::clear);
+            generated.add(file);
+        }
+        return generated;
+    }
+
+    private int pickTarget(Random random, int index) {
+        if (index + 1 < files && random.nextDouble() < cycleDensity) {
+            return index + 1 + random.nextInt(files - index - 1);
+        }
+        if (index == 0) {
+            return -1;
+        }
+        int packageStart = index - index % filesPerPackage;
+        if (packageStart < index && random.nextBoolean()) {
+            return packageStart + random.nextInt(index - packageStart);
+        }
+        return random.nextInt(index);
+    }
+
+    private int packageOf(int index) {
+        return index / filesPerPackage;
+    }
+
+    /**
+     * @return A package name of {@code packageDepth} segments below {@code org.synthetic}, packages sharing their
+     * parent in groups of 8.
+     */
+    private String packageName(int index) {
+        StringBuilder name = new StringBuilder("org.synthetic");
+        int group = packageOf(index);
+        for (int level = packageDepth - 1; level > 0; level--) {
+            name.append(".g").append(group >> (3 * level));
+        }
+        return name.append(".p").append(group).toString();
+    }
+
+    private String className(int index) {
+        return packageName(index) + ".C" + index;
+    }
+
+    private static String constantName(int index) {
+        return "VALUE_" + index;
+    }
+
+    private static boolean isInterface(int index) {
+        return index % 5 == 4;
+    }
+
+    private Path relativePath(int index) {
+        return Path.of("src", "main", "java").resolve(packageName(index).replace('.', '/') + "/C" + index + ".java");
+    }
+
+    private static final class GeneratedFile {
+        private final int index;
+        private final List<Integer> imports = new ArrayList<>();
+        private final List<Integer> staticImports = new ArrayList<>();
+        private int superClass = -1;
+        private int superInterface = -1;
+
+        private GeneratedFile(int index) {
+            this.index = index;
+        }
+    }
+}
@@ -0,0 +1,69 @@
+/*
+ * Copyright (C) 2023 Dorian Burihabwa
+ * This code is released under [MIT No Attribution](https://opensource.org/licenses/MIT-0) license.
+ */
+package com.burihabwa.source.checks.utils;
+
+import com.burihabwa.source.graph.Module;
+import com.burihabwa.source.graph.SourceFile;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SyntheticCodebaseTest {
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void same_seed_gives_the_same_codebase() {
+        List<SourceFile> first = SyntheticCodebase.withSeed(7).files(500).sourceFiles();
+
+        assertThat(SyntheticCodebase.withSeed(7).files(500).sourceFiles()).isEqualTo(first);
+        assertThat(SyntheticCodebase.withSeed(8).files(500).sourceFiles()).isNotEqualTo(first);
+    }
+
+    @Test
+    void cycle_density_controls_import_cycles() {
+        Module acyclic = new Module(SyntheticCodebase.withSeed(1).files(2_000).cycleDensity(0).sourceFiles());
+        Module cyclic = new Module(SyntheticCodebase.withSeed(1).files(2_000).cycleDensity(0.1).sourceFiles());
+
+        assertThat(acyclic.getCondensation().cycles()).isEmpty();
+        assertThat(cyclic.getCondensation().cycles()).isNotEmpty();
+    }
+
+    @Test
+    void fan_out_and_package_depth_are_honored() {
+        List<SourceFile> files = SyntheticCodebase.withSeed(3)
+                .files(1_000)
+                .fanOut(2, 3)
+                .packageDepth(4)
+                .filesPerPackage(10)
+                .sourceFiles();
+
+        assertThat(files).hasSize(1_000);
+        assertThat(files).allSatisfy(file -> {
+            assertThat(file.classes.get(0).split("\\.")).hasSize(7);
+            assertThat(file.imports.stream().filter(anImport -> !anImport.contains(".VALUE_")).distinct()).hasSizeLessThanOrEqualTo(3);
+        });
+        assertThat(files.stream().mapToInt(file -> file.imports.size()).average().orElse(0)).isBetween(1.0, 4.0);
+    }
+
+    @Test
+    void writes_a_java_file_per_source_file() throws IOException {
+        SyntheticCodebase codebase = SyntheticCodebase.withSeed(11).files(20).filesPerPackage(5);
+
+        List<Path> written = codebase.writeJavaSources(tempDir);
+
+        assertThat(written).hasSize(20).allSatisfy(path -> assertThat(path).exists());
+        List<SourceFile> files = codebase.sourceFiles(tempDir);
+        for (int i = 0; i < written.size(); i++) {
+            assertThat(written.get(i)).isEqualTo(files.get(i).path);
+        }
+        assertThat(written.get(4)).content().contains("public interface C4 {");
+    }
+}
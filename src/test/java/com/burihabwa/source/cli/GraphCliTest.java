@@ -0,0 +1,179 @@
+/*
+ * Copyright (C) 2023 Dorian Burihabwa
+ * This code is released under [MIT No Attribution](https://opensource.org/licenses/MIT-0) license.
+ */
+package com.burihabwa.source.cli;
+
+import com.burihabwa.source.graph.Module;
+import com.burihabwa.source.graph.ShardedModule;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class GraphCliTest {
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void builds_the_same_graph_as_the_rule() throws IOException {
+        int exitCode = GraphCli.run(
+                new String[]{"--output", tempDir.toString(), "--parallelism", "2", "src/test/resources/inheritance"},
+                new PrintStream(new ByteArrayOutputStream()),
+                new PrintStream(new ByteArrayOutputStream())
+        );
+
+        assertThat(exitCode).isZero();
+        Path expected = Path.of("src/test/resources/inheritance/module-graph.json");
+        assertThat(tempDir.resolve("module-graph.json")).hasSameBinaryContentAs(expected);
+        assertThat(Module.map(tempDir.resolve("module-graph.bin"))).hasToString(Files.readString(expected));
+    }
+
+    @Test
+    void resolves_super_types_declared_in_another_package_like_the_rule() throws IOException {
+        int exitCode = GraphCli.run(
+                new String[]{"--output", tempDir.toString(), "src/test/resources/cross-package"},
+                new PrintStream(new ByteArrayOutputStream()),
+                new PrintStream(new ByteArrayOutputStream())
+        );
+
+        assertThat(exitCode).isZero();
+        // Written by the rule in GraphDependencyRuleTest
+        assertThat(tempDir.resolve("module-graph.json")).hasSameBinaryContentAs(Path.of("src/test/resources/cross-package/module-graph.json"));
+    }
+
+    @Test
+    void names_the_graph_after_the_module() {
+        int exitCode = GraphCli.run(
+                new String[]{"--module", "my-module", "--output", tempDir.toString(), "src/test/resources/implementation"},
+                new PrintStream(new ByteArrayOutputStream()),
+                new PrintStream(new ByteArrayOutputStream())
+        );
+
+        assertThat(exitCode).isZero();
+        assertThat(tempDir.resolve("my-module-graph.json")).hasSameBinaryContentAs(Path.of("src/test/resources/implementation/module-graph.json"));
+    }
+
+    @Test
+    void declarations_only_flag_takes_no_value() {
+        int exitCode = GraphCli.run(
+                new String[]{"--declarations-only", "--output", tempDir.toString(), "src/test/resources/inheritance"},
+                new PrintStream(new ByteArrayOutputStream()),
+                new PrintStream(new ByteArrayOutputStream())
+        );
+
+        assertThat(exitCode).isZero();
+        assertThat(tempDir.resolve("module-graph.json")).hasSameBinaryContentAs(Path.of("src/test/resources/inheritance/module-graph.json"));
+    }
+
+    @Test
+    void compresses_the_graph_on_demand() throws IOException {
+        int exitCode = GraphCli.run(
+                new String[]{"--compress", "--output", tempDir.toString(), "src/test/resources/inheritance"},
+                new PrintStream(new ByteArrayOutputStream()),
+                new PrintStream(new ByteArrayOutputStream())
+        );
+
+        assertThat(exitCode).isZero();
+        assertThat(tempDir.resolve("module-graph.json")).doesNotExist();
+        assertThat(Module.of(tempDir.resolve("module-graph.json.gz")))
+                .hasToString(Files.readString(Path.of("src/test/resources/inheritance/module-graph.json")));
+        assertThat(GraphCli.listGraphFiles(List.of(tempDir))).containsExactly(tempDir.resolve("module-graph.json.gz"));
+    }
+
+    @Test
+    void shards_the_graph_on_demand() throws IOException {
+        int exitCode = GraphCli.run(
+                new String[]{"--shards", "4", "--output", tempDir.toString(), "src/test/resources/inheritance"},
+                new PrintStream(new ByteArrayOutputStream()),
+                new PrintStream(new ByteArrayOutputStream())
+        );
+
+        assertThat(exitCode).isZero();
+        Module module = Module.of(tempDir.resolve("module-graph.json"));
+        ShardedModule sharded = ShardedModule.open(tempDir.resolve("module-shards"));
+        assertThat(sharded.size()).isEqualTo(module.size());
+        Path changed = Path.of("src/test/resources/inheritance/Base.java");
+        assertThat(sharded.getSourceFilesImpactedByChangeOf(changed))
+                .isEqualTo(module.getSourceFilesImpactedByChangeOf(changed))
+                .hasSize(1);
+    }
+
+    @Test
+    void merges_the_module_graphs_found_in_a_directory() throws IOException {
+        Path graphs = Files.createDirectories(tempDir.resolve("graphs"));
+        Files.copy(Path.of("src/test/resources/inheritance/module-graph.json"), graphs.resolve("inheritance-graph.json"));
+        Files.copy(Path.of("src/test/resources/implementation/module-graph.json"), graphs.resolve("implementation-graph.json"));
+        Path output = tempDir.resolve("project");
+
+        int exitCode = GraphCli.run(
+                new String[]{"merge", "--module", "project", "--output", output.toString(), graphs.toString()},
+                new PrintStream(new ByteArrayOutputStream()),
+                new PrintStream(new ByteArrayOutputStream())
+        );
+
+        assertThat(exitCode).isZero();
+        Module project = Module.of(output.resolve("project-graph.json"));
+        Module implementation = Module.of(Path.of("src/test/resources/implementation/module-graph.json"));
+        Module inheritance = Module.of(Path.of("src/test/resources/inheritance/module-graph.json"));
+        assertThat(project.size()).isEqualTo(implementation.size() + inheritance.size());
+        assertThat(output.resolve("project-cycles.json")).exists();
+    }
+
+    @Test
+    void merges_only_the_newest_graph_of_a_module() throws IOException {
+        Path graphs = Files.createDirectories(tempDir.resolve("graphs"));
+        Path stale = Files.copy(Path.of("src/test/resources/inheritance/module-graph.json"), graphs.resolve("inheritance-graph.json"));
+        Files.setLastModifiedTime(stale, FileTime.fromMillis(1_000));
+        Path compressed = graphs.resolve("inheritance-graph.json.gz");
+        Module.of(stale).writeCompressed(compressed);
+        Path other = Files.copy(Path.of("src/test/resources/implementation/module-graph.json"), graphs.resolve("implementation-graph.json"));
+
+        assertThat(GraphCli.listGraphFiles(List.of(graphs))).containsExactly(other, compressed);
+
+        Files.setLastModifiedTime(compressed, FileTime.fromMillis(0));
+        assertThat(GraphCli.listGraphFiles(List.of(graphs))).containsExactly(other, stale);
+    }
+
+    @Test
+    void prints_the_diff_between_two_graphs() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        int exitCode = GraphCli.run(
+                new String[]{"diff", "src/test/resources/inheritance/module-graph.json", "src/test/resources/implementation/module-graph.json"},
+                new PrintStream(out),
+                new PrintStream(new ByteArrayOutputStream())
+        );
+
+        assertThat(exitCode).isZero();
+        assertThat(out.toString())
+                .startsWith("{\"added\":[\"src/test/resources/implementation/")
+                .contains("\"removed\":[\"src/test/resources/inheritance/Base.java\",\"src/test/resources/inheritance/Child.java\"]");
+    }
+
+    @Test
+    void rejects_invalid_arguments() {
+        ByteArrayOutputStream err = new ByteArrayOutputStream();
+        PrintStream out = new PrintStream(new ByteArrayOutputStream());
+
+        assertThat(GraphCli.run(new String[0], out, new PrintStream(err))).isEqualTo(2);
+        assertThat(GraphCli.run(new String[]{"--parallelism", "0", "src"}, out, new PrintStream(err))).isEqualTo(2);
+        assertThat(GraphCli.run(new String[]{"--unknown", "value", "src"}, out, new PrintStream(err))).isEqualTo(2);
+        assertThat(GraphCli.run(new String[]{"diff", "graph.json"}, out, new PrintStream(err))).isEqualTo(2);
+        assertThat(GraphCli.run(new String[]{"merge", "--watch", "graphs"}, out, new PrintStream(err))).isEqualTo(2);
+        assertThat(err.toString())
+                .contains("At least one source root is expected.")
+                .contains("Option --parallelism expects a positive number (0).")
+                .contains("Unknown option --unknown.")
+                .contains("Two graph files are expected.")
+                .contains("Option --watch only applies to source roots.")
+                .contains("Usage: GraphCli");
+    }
+}
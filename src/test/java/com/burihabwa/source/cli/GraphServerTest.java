@@ -0,0 +1,155 @@
+/*
+ * Copyright (C) 2023 Dorian Burihabwa
+ * This code is released under [MIT No Attribution](https://opensource.org/licenses/MIT-0) license.
+ */
+package com.burihabwa.source.cli;
+
+import com.burihabwa.source.graph.Module;
+import com.burihabwa.source.graph.SourceFile;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Collections;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class GraphServerTest {
+    private static final SourceFile BASE = new SourceFile(Path.of("Base.java"), List.of("org.example.Base"), Collections.emptyList());
+    private static final SourceFile CHILD = new SourceFile(Path.of("Child.java"), List.of("org.example.Child"), List.of("org.example.Base"));
+    private static final SourceFile GRAND_CHILD = new SourceFile(Path.of("GrandChild.java"), List.of("org.example.GrandChild"), List.of("org.example.Child"));
+
+    private final HttpClient client = HttpClient.newHttpClient();
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void answers_queries_over_a_single_graph() throws IOException, InterruptedException {
+        Path graph = tempDir.resolve("app-graph.json");
+        new Module(List.of(BASE, CHILD, GRAND_CHILD)).write(graph);
+
+        try (GraphServer server = new GraphServer(List.of(graph), 0, 2, 0, new PrintStream(new ByteArrayOutputStream()))) {
+            assertThat(server.address().getAddress().isLoopbackAddress()).isTrue();
+            assertThat(get(server, "/modules").body())
+                    .isEqualTo("{\"modules\":[{\"name\":\"app\",\"path\":\"" + graph + "\",\"files\":3}]}");
+            assertThat(get(server, "/impact?path=Base.java").body()).isEqualTo("{\"files\":[\"Child.java\"]}");
+            assertThat(get(server, "/impact?path=Base.java&depth=all").body()).isEqualTo("{\"files\":[\"Child.java\",\"GrandChild.java\"]}");
+            assertThat(get(server, "/impact?path=Base.java&depth=0").body()).isEqualTo("{\"files\":[]}");
+            assertThat(get(server, "/dependencies?path=Child.java").body()).isEqualTo("{\"files\":[\"Base.java\"]}");
+            assertThat(get(server, "/path?from=GrandChild.java&to=Base.java&module=app").body())
+                    .isEqualTo("{\"files\":[\"GrandChild.java\",\"Child.java\",\"Base.java\"]}");
+        }
+    }
+
+    @Test
+    void reports_invalid_queries() throws IOException, InterruptedException {
+        Path first = tempDir.resolve("first-graph.json");
+        Path second = tempDir.resolve("second-graph.bin");
+        new Module(List.of(BASE, CHILD)).write(first);
+        new Module(List.of(BASE)).writeBinary(second);
+
+        try (GraphServer server = new GraphServer(List.of(first, second), 0, 1, 0, new PrintStream(new ByteArrayOutputStream()))) {
+            HttpResponse<String> noModule = get(server, "/impact?path=Base.java");
+            assertThat(noModule.statusCode()).isEqualTo(400);
+            assertThat(noModule.body()).isEqualTo("{\"error\":\"Several graphs are served, a module is expected.\"}");
+            assertThat(get(server, "/impact?module=first").statusCode()).isEqualTo(400);
+            assertThat(get(server, "/impact?module=first&path=Base.java&depth=deep").statusCode()).isEqualTo(400);
+            assertThat(get(server, "/impact?module=third&path=Base.java").statusCode()).isEqualTo(400);
+            assertThat(get(server, "/dependencies?module=second&path=Child.java").statusCode()).isEqualTo(404);
+            assertThat(get(server, "/dependencies?module=second&path=Base.java").body()).isEqualTo("{\"files\":[]}");
+        }
+    }
+
+    @Test
+    void reports_failing_queries_as_server_errors() throws IOException, InterruptedException {
+        Path graph = tempDir.resolve("app-graph.json");
+        new Module(List.of(BASE)).write(graph);
+        ByteArrayOutputStream err = new ByteArrayOutputStream();
+
+        try (GraphServer server = new GraphServer(List.of(graph), 0, 1, 0, new PrintStream(err))) {
+            server.handle("/failing", (parameters, writer) -> {
+                throw new IllegalStateException("broken");
+            });
+            HttpResponse<String> response = get(server, "/failing");
+            assertThat(response.statusCode()).isEqualTo(500);
+            assertThat(response.body()).isEqualTo("{\"error\":\"The query failed, see the server output.\"}");
+            assertThat(get(server, "/impact?path=Base.java").statusCode()).isEqualTo(200);
+        }
+        assertThat(err.toString()).contains("/failing", "java.lang.IllegalStateException: broken");
+    }
+
+    @Test
+    void swaps_in_a_graph_once_its_file_changes() throws IOException, InterruptedException {
+        Path graph = tempDir.resolve("app-graph.json");
+        new Module(List.of(BASE, CHILD)).write(graph);
+        ByteArrayOutputStream err = new ByteArrayOutputStream();
+
+        try (GraphServer server = new GraphServer(List.of(graph), 0, 1, 0, new PrintStream(err))) {
+            Files.writeString(graph, "{\"files\": [");
+            Files.setLastModifiedTime(graph, FileTime.fromMillis(Files.getLastModifiedTime(graph).toMillis() + 2_000));
+            server.reloadChangedGraphs();
+            assertThat(err.toString()).contains("Could not reload " + graph + ", keeping the current graph");
+            assertThat(get(server, "/impact?path=Base.java").body()).isEqualTo("{\"files\":[\"Child.java\"]}");
+
+            new Module(List.of(BASE, CHILD, GRAND_CHILD)).write(graph);
+            Files.setLastModifiedTime(graph, FileTime.fromMillis(Files.getLastModifiedTime(graph).toMillis() + 4_000));
+            server.reloadChangedGraphs();
+            assertThat(get(server, "/impact?path=Base.java&depth=all").body()).isEqualTo("{\"files\":[\"Child.java\",\"GrandChild.java\"]}");
+        }
+    }
+
+    @Test
+    void keeps_answering_from_a_mapped_graph_while_its_file_is_rewritten() throws IOException, InterruptedException {
+        Path graph = tempDir.resolve("app-graph.bin");
+        new Module(List.of(BASE, CHILD)).writeBinary(graph);
+
+        try (GraphServer server = new GraphServer(List.of(graph), 0, 1, 0, new PrintStream(new ByteArrayOutputStream()))) {
+            new Module(List.of(GRAND_CHILD)).writeBinary(graph);
+            assertThat(get(server, "/impact?path=Base.java").body()).isEqualTo("{\"files\":[\"Child.java\"]}");
+            assertThat(get(server, "/dependencies?path=Child.java").body()).isEqualTo("{\"files\":[\"Base.java\"]}");
+
+            Files.setLastModifiedTime(graph, FileTime.fromMillis(Files.getLastModifiedTime(graph).toMillis() + 2_000));
+            server.reloadChangedGraphs();
+            assertThat(get(server, "/impact?path=Base.java").statusCode()).isEqualTo(404);
+            assertThat(get(server, "/impact?path=GrandChild.java").body()).isEqualTo("{\"files\":[]}");
+        }
+    }
+
+    @Test
+    void refuses_two_graphs_of_the_same_name() throws IOException {
+        Path graph = tempDir.resolve("app-graph.json");
+        new Module(List.of(BASE)).write(graph);
+        Path binary = tempDir.resolve("app-graph.bin");
+        new Module(List.of(BASE)).writeBinary(binary);
+
+        assertThrows(
+                IllegalArgumentException.class,
+                () -> new GraphServer(List.of(graph, binary), 0, 1, 0, new PrintStream(new ByteArrayOutputStream()))
+        );
+    }
+
+    @Test
+    void names_graphs_after_their_file() {
+        assertThat(GraphServer.nameOf(Path.of("out", "my-module-graph.json"))).isEqualTo("my-module");
+        assertThat(GraphServer.nameOf(Path.of("my-module-graph.bin"))).isEqualTo("my-module");
+        assertThat(GraphServer.nameOf(Path.of("my-module-graph.json.gz"))).isEqualTo("my-module");
+        assertThat(GraphServer.nameOf(Path.of("graph.json"))).isEqualTo("graph.json");
+    }
+
+    private HttpResponse<String> get(GraphServer server, String query) throws IOException, InterruptedException {
+        URI uri = URI.create("http://" + server.address().getHostString() + ":" + server.address().getPort() + query);
+        return client.send(HttpRequest.newBuilder(uri).GET().build(), HttpResponse.BodyHandlers.ofString());
+    }
+}
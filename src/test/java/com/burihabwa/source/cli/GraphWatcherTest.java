@@ -0,0 +1,164 @@
+/*
+ * Copyright (C) 2023 Dorian Burihabwa
+ * This code is released under [MIT No Attribution](https://opensource.org/licenses/MIT-0) license.
+ */
+package com.burihabwa.source.cli;
+
+import com.burihabwa.source.graph.Module;
+import com.burihabwa.source.graph.SourceFile;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class GraphWatcherTest {
+    private final ExecutorService executor = Executors.newFixedThreadPool(2);
+    private final AtomicInteger extractions = new AtomicInteger();
+
+    @TempDir
+    Path root;
+
+    @AfterEach
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void only_extracts_the_changed_files() throws IOException, InterruptedException {
+        Path base = write("org/example/Base.java");
+        Path child = write("org/example/Child.java", "org.example.Base");
+        try (GraphWatcher watcher = watcher(List.of(extract(base), extract(child)))) {
+            extractions.set(0);
+            Path user = write("org/example/User.java", "org.example.Child");
+
+            Module module = watcher.update(List.of(user));
+
+            assertThat(extractions).hasValue(1);
+            assertThat(module.getSourceFilesTransitivelyImpactedByChangeOf(base)).extracting(file -> file.path).containsExactly(child, user);
+        }
+    }
+
+    @Test
+    void forgets_deleted_files_and_directories() throws IOException, InterruptedException {
+        Path base = write("org/example/Base.java");
+        Path child = write("org/example/sub/Child.java", "org.example.Base");
+        Path other = write("org/example/sub/Other.java", "org.example.Base");
+        try (GraphWatcher watcher = watcher(List.of(extract(base), extract(child), extract(other)))) {
+            extractions.set(0);
+            Files.delete(child);
+            assertThat(watcher.update(List.of(child)).getSourceFilesImpactedByChangeOf(base)).extracting(file -> file.path).containsExactly(other);
+
+            Files.delete(other);
+            Files.delete(other.getParent());
+            assertThat(watcher.update(List.of(other.getParent())).size()).isEqualTo(1);
+            assertThat(extractions).hasValue(0);
+        }
+    }
+
+    @Test
+    void picks_up_the_files_of_new_directories() throws IOException, InterruptedException {
+        Path base = write("org/example/Base.java");
+        try (GraphWatcher watcher = watcher(List.of(extract(base)))) {
+            Path child = write("org/example/a/b/Child.java", "org.example.Base");
+
+            Module module = watcher.update(List.of(root.resolve("org/example/a")));
+
+            assertThat(module.getSourceFilesImpactedByChangeOf(base)).extracting(file -> file.path).containsExactly(child);
+        }
+    }
+
+    @Test
+    void registers_the_directories_created_while_events_were_lost() throws IOException, InterruptedException {
+        Path base = write("org/example/Base.java");
+        try (GraphWatcher watcher = watcher(List.of(extract(base)))) {
+            Path checkedOut = write("org/example/checkout/deep/Child.java", "org.example.Base");
+            assertThat(watcher.isRegistered(root.resolve("org/example/checkout"))).isFalse();
+
+            Module module = watcher.update(watcher.rescan());
+
+            assertThat(watcher.isRegistered(root.resolve("org/example/checkout"))).isTrue();
+            assertThat(watcher.isRegistered(root.resolve("org/example/checkout/deep"))).isTrue();
+            assertThat(module.getSourceFilesImpactedByChangeOf(base)).extracting(file -> file.path).containsExactly(checkedOut);
+        }
+    }
+
+    @Test
+    void ignores_batches_that_change_no_source_file() throws IOException, InterruptedException {
+        Path base = write("org/example/Base.java");
+        try (GraphWatcher watcher = watcher(List.of(extract(base)))) {
+            Files.writeString(root.resolve("org/example/notes.txt"), "not Java");
+
+            assertThat(watcher.update(List.of(base, root.resolve("org/example/notes.txt"), root.resolve("org/example")))).isNull();
+        }
+    }
+
+    @Test
+    void batches_bursts_of_events() throws IOException, InterruptedException {
+        Path base = write("org/example/Base.java");
+        BlockingQueue<Module> updates = new LinkedBlockingQueue<>();
+        try (GraphWatcher watcher = watcher(List.of(extract(base)))) {
+            Thread thread = new Thread(() -> {
+                try {
+                    watcher.run((module, changedPaths) -> updates.add(module));
+                } catch (IOException e) {
+                    throw new IllegalStateException(e);
+                }
+            });
+            thread.start();
+            for (int i = 0; i < 20; i++) {
+                write("org/example/burst/Child" + i + ".java", "org.example.Base");
+            }
+
+            int batches = 0;
+            Module module = null;
+            while (module == null || module.size() < 21) {
+                module = updates.poll(30, TimeUnit.SECONDS);
+                assertThat(module).isNotNull();
+                batches++;
+            }
+            assertThat(module.getSourceFilesImpactedByChangeOf(base)).hasSize(20);
+            assertThat(batches).isLessThan(20);
+            thread.interrupt();
+            thread.join(10_000);
+        }
+    }
+
+    private GraphWatcher watcher(List<SourceFile> initial) throws IOException {
+        return new GraphWatcher(List.of(root), initial, this::extract, executor, 100, new PrintStream(new ByteArrayOutputStream()));
+    }
+
+    private Path write(String relativePath, String... imports) throws IOException {
+        Path file = root.resolve(relativePath);
+        Files.createDirectories(file.getParent());
+        Files.write(file, List.of(imports));
+        return file;
+    }
+
+    /**
+     * Reads the imports from the lines of the file and names its class after its path.
+     */
+    private SourceFile extract(Path file) throws IOException {
+        extractions.incrementAndGet();
+        String relativePath = root.relativize(file).toString();
+        String className = relativePath.substring(0, relativePath.length() - ".java".length()).replace('/', '.');
+        List<String> imports = new ArrayList<>(Files.readAllLines(file));
+        imports.removeAll(Collections.singleton(""));
+        return new SourceFile(file, List.of(className), imports);
+    }
+}
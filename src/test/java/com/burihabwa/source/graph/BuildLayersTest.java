@@ -0,0 +1,67 @@
+/*
+ * Copyright (C) 2023 Dorian Burihabwa
+ * This code is released under [MIT No Attribution](https://opensource.org/licenses/MIT-0) license.
+ */
+package com.burihabwa.source.graph;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class BuildLayersTest {
+    private static final Module MODULE = new Module(List.of(
+            new SourceFile(Path.of("App.java"), List.of("App"), List.of("Service", "Util")),
+            new SourceFile(Path.of("Service.java"), List.of("Service"), List.of("Repository")),
+            new SourceFile(Path.of("Repository.java"), List.of("Repository"), List.of("Entity")),
+            new SourceFile(Path.of("Entity.java"), List.of("Entity"), List.of("Repository")),
+            new SourceFile(Path.of("Util.java"), List.of("Util"), Collections.emptyList())
+    ));
+
+    @Test
+    void places_files_after_their_deepest_dependency() {
+        BuildLayers layers = MODULE.getBuildLayers();
+
+        assertThat(layers.size()).isEqualTo(3);
+        assertThat(layers.files(0)).containsExactlyInAnyOrder(Path.of("Repository.java"), Path.of("Entity.java"), Path.of("Util.java"));
+        assertThat(layers.width(0)).isEqualTo(3);
+        assertThat(layers.files(1)).containsExactly(Path.of("Service.java"));
+        assertThat(layers.files(2)).containsExactly(Path.of("App.java"));
+    }
+
+    @Test
+    void critical_path_counts_every_file_of_a_cycle() {
+        BuildLayers layers = MODULE.getBuildLayers();
+
+        assertThat(layers.criticalPathLength()).isEqualTo(4);
+        assertThat(layers.criticalPath()).containsExactly(
+                Path.of("Repository.java"), Path.of("Entity.java"), Path.of("Service.java"), Path.of("App.java")
+        );
+    }
+
+    @Test
+    void empty_module_has_no_layer() {
+        BuildLayers layers = new Module(Collections.emptyList()).getBuildLayers();
+
+        assertThat(layers.size()).isZero();
+        assertThat(layers.criticalPath()).isEmpty();
+        assertThat(layers).hasToString("{\"layers\":[],\"maxWidth\":0,\"criticalPath\":{\"length\":0,\"files\":[]}}");
+    }
+
+    @Test
+    void writes_a_json_report() {
+        Module module = new Module(List.of(
+                new SourceFile(Path.of("A.java"), List.of("A"), List.of("B")),
+                new SourceFile(Path.of("B.java"), List.of("B"), Collections.emptyList()),
+                new SourceFile(Path.of("C.java"), List.of("C"), Collections.emptyList())
+        ));
+
+        assertThat(module.getBuildLayers()).hasToString("{\"layers\":[" +
+                "{\"width\":2,\"files\":[\"B.java\",\"C.java\"]}," +
+                "{\"width\":1,\"files\":[\"A.java\"]}" +
+                "],\"maxWidth\":2,\"criticalPath\":{\"length\":2,\"files\":[\"B.java\",\"A.java\"]}}");
+    }
+}
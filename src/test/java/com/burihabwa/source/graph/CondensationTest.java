@@ -0,0 +1,100 @@
+/*
+ * Copyright (C) 2023 Dorian Burihabwa
+ * This code is released under [MIT No Attribution](https://opensource.org/licenses/MIT-0) license.
+ */
+package com.burihabwa.source.graph;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CondensationTest {
+    private static final Module MODULE = new Module(List.of(
+            new SourceFile(Path.of("A.java"), List.of("org.a.A"), List.of("org.b.B")),
+            new SourceFile(Path.of("B.java"), List.of("org.b.B"), List.of("org.a.A")),
+            new SourceFile(Path.of("C.java"), List.of("org.c.C"), List.of("org.a.A")),
+            new SourceFile(Path.of("D.java"), List.of("org.d.D"), Collections.emptyList())
+    ));
+
+    @Test
+    void groups_import_cycles_into_a_single_component() {
+        Condensation condensation = MODULE.getCondensation();
+
+        assertThat(condensation.size()).isEqualTo(3);
+        assertThat(condensation.files(0)).containsExactly(Path.of("A.java"), Path.of("B.java"));
+        assertThat(condensation.isCycle(0)).isTrue();
+        assertThat(condensation.files(1)).containsExactly(Path.of("C.java"));
+        assertThat(condensation.isCycle(1)).isFalse();
+        assertThat(condensation.cycles()).containsExactly(List.of(Path.of("A.java"), Path.of("B.java")));
+    }
+
+    @Test
+    void components_only_depend_on_lower_components() {
+        Condensation condensation = MODULE.getCondensation();
+
+        assertThat(condensation.dependencies(0)).isEmpty();
+        assertThat(condensation.dependencies(1)).containsExactly(0);
+        assertThat(condensation.dependencies(2)).isEmpty();
+    }
+
+    @Test
+    void handles_import_chains_deeper_than_the_thread_stack() {
+        int length = 200_000;
+        List<SourceFile> files = new ArrayList<>(length);
+        for (int i = 0; i < length; i++) {
+            files.add(new SourceFile(Path.of("F" + i + ".java"), List.of("F" + i), List.of("F" + ((i + 1) % length))));
+        }
+        files.add(new SourceFile(Path.of("Leaf.java"), List.of("Leaf"), List.of("F0")));
+
+        Condensation condensation = new Module(files).getCondensation();
+
+        assertThat(condensation.size()).isEqualTo(2);
+        assertThat(condensation.files(0)).hasSize(length);
+        assertThat(condensation.dependencies(1)).containsExactly(0);
+    }
+
+    @Test
+    void writes_a_json_report() {
+        assertThat(MODULE.getCondensation()).hasToString("{\"components\":[" +
+                "{\"files\":[\"A.java\",\"B.java\"],\"dependencies\":[]}," +
+                "{\"files\":[\"C.java\"],\"dependencies\":[0]}," +
+                "{\"files\":[\"D.java\"],\"dependencies\":[]}" +
+                "],\"cycles\":[0]}");
+    }
+
+    @Test
+    void writes_the_condensed_graph_as_dot() throws IOException {
+        StringWriter writer = new StringWriter();
+
+        MODULE.getCondensation().writeDot(writer);
+
+        assertThat(writer.toString()).isEqualToIgnoringNewLines(String.join("\n",
+                "digraph condensation {",
+                "  \"0\" [label=\"A.java\\nB.java\", shape=box, color=red];",
+                "  \"1\" [label=\"C.java\"];",
+                "  \"1\" -> \"0\";",
+                "  \"2\" [label=\"D.java\"];",
+                "}"
+        ));
+    }
+
+    @Test
+    void escapes_the_backslashes_of_windows_paths_in_dot() throws IOException {
+        Module module = new Module(List.of(
+                new SourceFile(Path.of("src\\A.java"), List.of("org.a.A"), List.of("org.b.B")),
+                new SourceFile(Path.of("src\\B.java"), List.of("org.b.B"), List.of("org.a.A"))
+        ));
+        StringWriter writer = new StringWriter();
+
+        module.getCondensation().writeDot(writer);
+
+        assertThat(writer.toString()).contains("  \"0\" [label=\"src\\\\A.java\\nsrc\\\\B.java\", shape=box, color=red];");
+    }
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright (C) 2023 Dorian Burihabwa
+ * This code is released under [MIT No Attribution](https://opensource.org/licenses/MIT-0) license.
+ */
+package com.burihabwa.source.graph;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ModuleDiffTest {
+    private static final Module BEFORE = new Module(List.of(
+            new SourceFile(Path.of("A.java"), List.of("A"), List.of("B")),
+            new SourceFile(Path.of("B.java"), List.of("B"), List.of("C")),
+            new SourceFile(Path.of("C.java"), List.of("C"), Collections.emptyList()),
+            new SourceFile(Path.of("D.java"), List.of("D"), List.of("C"))
+    ));
+    private static final Module AFTER = new Module(List.of(
+            new SourceFile(Path.of("A.java"), List.of("A"), List.of("B")),
+            new SourceFile(Path.of("B.java"), List.of("B"), List.of("C", "E")),
+            new SourceFile(Path.of("C.java"), List.of("C"), List.of("A")),
+            new SourceFile(Path.of("E.java"), List.of("E"), Collections.emptyList())
+    ));
+
+    @Test
+    void lists_added_removed_and_changed_files() {
+        ModuleDiff diff = ModuleDiff.between(BEFORE, AFTER);
+
+        assertThat(diff.addedFiles).containsExactly(Path.of("E.java"));
+        assertThat(diff.removedFiles).containsExactly(Path.of("D.java"));
+        assertThat(diff.changedFiles).extracting(sourceFile -> sourceFile.path)
+                .containsExactly(Path.of("B.java"), Path.of("C.java"), Path.of("E.java"));
+    }
+
+    @Test
+    void lists_added_and_removed_dependencies() {
+        ModuleDiff diff = ModuleDiff.between(BEFORE, AFTER);
+
+        assertThat(diff.addedDependencies).containsExactly(
+                new Dependency(Path.of("B.java"), Path.of("E.java")),
+                new Dependency(Path.of("C.java"), Path.of("A.java"))
+        );
+        assertThat(diff.removedDependencies).containsExactly(new Dependency(Path.of("D.java"), Path.of("C.java")));
+    }
+
+    @Test
+    void reports_cycles_that_did_not_exist_before() {
+        assertThat(ModuleDiff.between(BEFORE, AFTER).newCycles)
+                .containsExactly(List.of(Path.of("A.java"), Path.of("B.java"), Path.of("C.java")));
+        assertThat(ModuleDiff.between(AFTER, AFTER).newCycles).isEmpty();
+    }
+
+    @Test
+    void identical_snapshots_give_an_empty_diff() {
+        ModuleDiff diff = ModuleDiff.between(BEFORE, Module.of(BEFORE.toString()));
+
+        assertThat(diff.isEmpty()).isTrue();
+        assertThat(diff.addedDependencies).isEmpty();
+        assertThat(diff.removedDependencies).isEmpty();
+        assertThat(diff).hasToString("{\"added\":[],\"addedPositions\":[],\"removed\":[],\"files\":[],\"addedDependencies\":[],\"removedDependencies\":[],\"newCycles\":[]}");
+    }
+
+    @Test
+    void delta_rebuilds_the_later_snapshot() throws IOException {
+        ModuleDiff delta = ModuleDiff.read(new StringReader(ModuleDiff.between(BEFORE, AFTER).toString()));
+
+        Module rebuilt = delta.applyTo(BEFORE);
+
+        assertThat(rebuilt).hasToString(AFTER.toString());
+        assertThat(ModuleDiff.between(rebuilt, AFTER).isEmpty()).isTrue();
+        assertThat(delta.addedDependencies).hasSize(2);
+        assertThat(delta.newCycles).hasSize(1);
+    }
+
+    @Test
+    void delta_inserts_the_added_files_at_their_position() throws IOException {
+        Module after = new Module(List.of(
+                new SourceFile(Path.of("A.java"), List.of("A"), List.of("B")),
+                new SourceFile(Path.of("AB.java"), List.of("AB"), List.of("A")),
+                new SourceFile(Path.of("B.java"), List.of("B"), List.of("C")),
+                new SourceFile(Path.of("BC.java"), List.of("BC"), Collections.emptyList()),
+                new SourceFile(Path.of("C.java"), List.of("C"), Collections.emptyList()),
+                new SourceFile(Path.of("D.java"), List.of("D"), List.of("C")),
+                new SourceFile(Path.of("E.java"), List.of("E"), Collections.emptyList())
+        ));
+        ModuleDiff diff = ModuleDiff.between(BEFORE, after);
+
+        assertThat(diff.addedPositions).containsExactly(1, 3, 6);
+        assertThat(diff.applyTo(BEFORE)).hasToString(after.toString());
+        assertThat(ModuleDiff.read(new StringReader(diff.toString())).applyTo(BEFORE)).hasToString(after.toString());
+        assertThat(ModuleDiff.between(after, BEFORE).applyTo(after)).hasToString(BEFORE.toString());
+    }
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright (C) 2023 Dorian Burihabwa
+ * This code is released under [MIT No Attribution](https://opensource.org/licenses/MIT-0) license.
+ */
+package com.burihabwa.source.graph;
+
+import com.google.gson.JsonSyntaxException;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class ModuleMergerTest {
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void resolves_imports_across_modules() throws IOException {
+        Path core = write("core", new SourceFile(Path.of("core/Entity.java"), List.of("org.core.Entity"), Collections.emptyList()));
+        Path app = write("app",
+                new SourceFile(Path.of("app/Service.java"), List.of("org.app.Service"), List.of("org.core.Entity")),
+                new SourceFile(Path.of("app/Main.java"), List.of("org.app.Main"), List.of("org.app.Service"))
+        );
+
+        Module project = ModuleMerger.merge(List.of(core, app), 2);
+
+        assertThat(project.size()).isEqualTo(3);
+        assertThat(project.getSourceFilesTransitivelyImpactedByChangeOf(Path.of("core/Entity.java")))
+                .extracting(sourceFile -> sourceFile.path)
+                .containsExactly(Path.of("app/Service.java"), Path.of("app/Main.java"));
+    }
+
+    @Test
+    void lists_files_in_the_order_of_the_graphs() throws IOException {
+        List<Path> graphs = new ArrayList<>();
+        List<SourceFile> files = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            SourceFile sourceFile = new SourceFile(Path.of("m" + i + "/A.java"), List.of("org.m" + i + ".A"), List.of("java.util.List", "org.m0.A"));
+            files.add(sourceFile);
+            graphs.add(write("m" + i, sourceFile));
+        }
+
+        Module project = ModuleMerger.merge(graphs, 3);
+
+        assertThat(project).hasToString(new Module(files).toString());
+    }
+
+    @Test
+    void reports_unreadable_graphs() throws IOException {
+        Path valid = write("valid", new SourceFile(Path.of("A.java"), List.of("A"), Collections.emptyList()));
+        Path malformed = Files.writeString(tempDir.resolve("malformed-graph.json"), "{\"files\": {}}");
+
+        assertThrows(JsonSyntaxException.class, () -> ModuleMerger.merge(List.of(valid, malformed), 2));
+        assertThrows(NoSuchFileException.class, () -> ModuleMerger.merge(List.of(tempDir.resolve("missing-graph.json")), 1));
+        assertThrows(IllegalArgumentException.class, () -> ModuleMerger.merge(List.of(valid), 0));
+    }
+
+    private Path write(String moduleKey, SourceFile... files) throws IOException {
+        Path graph = tempDir.resolve(moduleKey + "-graph.json");
+        new Module(List.of(files)).write(graph);
+        return graph;
+    }
+}
@@ -4,15 +4,22 @@
  */
 package com.burihabwa.source.graph;
 
+import com.google.gson.JsonSyntaxException;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringWriter;
 import java.nio.charset.Charset;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.zip.GZIPInputStream;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.jupiter.api.Assertions.assertThrows;
@@ -42,6 +49,92 @@ class ModuleTest {
         assertThat(module.toString()).isEqualTo(input);
     }
 
+    @Test
+    void streams_module_to_file_in_the_same_format(@TempDir Path tempDir) throws IOException {
+        Path path = Path.of("src", "test", "resources", "static-imports", "module-graph.json");
+        Module module = Module.of(path);
+        Path written = tempDir.resolve("module-graph.json");
+
+        module.write(written);
+
+        assertThat(Files.readAllBytes(written)).isEqualTo(Files.readAllBytes(path));
+    }
+
+    @Test
+    void loads_compressed_modules_transparently(@TempDir Path tempDir) throws IOException {
+        Path path = Path.of("src", "test", "resources", "static-imports", "module-graph.json");
+        Module module = Module.of(path);
+        Path compressed = tempDir.resolve("module-graph.json.gz");
+
+        module.writeCompressed(compressed);
+
+        try (InputStream in = new GZIPInputStream(Files.newInputStream(compressed))) {
+            assertThat(in.readAllBytes()).isEqualTo(Files.readAllBytes(path));
+        }
+        assertThat(Module.of(compressed)).hasToString(module.toString());
+        Path renamed = Files.move(compressed, tempDir.resolve("module-graph.json"));
+        assertThat(Module.of(renamed)).hasToString(module.toString());
+    }
+
+    @Test
+    void loads_files_shorter_than_the_gzip_header(@TempDir Path tempDir) throws IOException {
+        Path empty = Files.writeString(tempDir.resolve("empty-graph.json"), "");
+        Path truncated = Files.writeString(tempDir.resolve("truncated-graph.json"), "{");
+
+        assertThrows(IOException.class, () -> Module.of(empty));
+        assertThrows(IOException.class, () -> Module.of(truncated));
+    }
+
+    @Test
+    void escapes_strings_like_gson() {
+        SourceFile sourceFile = new SourceFile(Path.of("A<B>.java"), List.of("org.example.A&B"), List.of("org.example.C=D'E"));
+
+        assertThat(new Module(List.of(sourceFile)).toString())
+                .isEqualTo("{\"files\":[{\"path\":\"A\\u003cB\\u003e.java\",\"classes\":[\"org.example.A\\u0026B\"],\"imports\":[\"org.example.C\\u003dD\\u0027E\"]}]}");
+    }
+
+    @Test
+    void loads_module_with_fields_in_any_order() {
+        Module module = Module.of("{\"version\":1,\"files\":[{\"imports\":[],\"extra\":{\"a\":[1]},\"classes\":[\"A\"],\"path\":\"A.java\"}]}");
+
+        assertThat(module).hasToString("{\"files\":[{\"path\":\"A.java\",\"classes\":[\"A\"],\"imports\":[]}]}");
+    }
+
+    @Test
+    void throws_a_JsonSyntaxException_on_malformed_input() {
+        assertThrows(JsonSyntaxException.class, () -> Module.of("{\"files\":[{\"path\":\"A.java\",\"classes\":\"A\"}]}"));
+        assertThrows(JsonSyntaxException.class, () -> Module.of("{\"files\":[{\"classes\":[],\"imports\":[]}]}"));
+        assertThrows(JsonSyntaxException.class, () -> Module.of("{\"files\":["));
+    }
+
+    @Test
+    void maps_module_from_binary_file(@TempDir Path tempDir) throws IOException {
+        Path path = Path.of("src", "test", "resources", "static-imports", "module-graph.json");
+        Module module = Module.of(path);
+        Path binary = tempDir.resolve("module-graph.bin");
+
+        module.writeBinary(binary);
+        Module mapped = Module.map(binary);
+
+        assertThat(mapped).hasToString(module.toString());
+        assertThat(mapped.toDot()).isEqualTo(module.toDot());
+        assertThat(mapped.getSourceFilesImpactedByChangeOf(Path.of("src/test/resources/static-imports/Producer.java")))
+                .isEqualTo(module.getSourceFilesImpactedByChangeOf(Path.of("src/test/resources/static-imports/Producer.java")));
+    }
+
+    @Test
+    void refuses_to_map_files_in_another_format(@TempDir Path tempDir) throws IOException {
+        Path path = Path.of("src", "test", "resources", "simple", "module-graph.json");
+        IOException exception = assertThrows(IOException.class, () -> Module.map(path));
+        assertThat(exception).hasMessageStartingWith("Not a binary graph file");
+
+        Path truncated = tempDir.resolve("truncated.bin");
+        Module.of(path).writeBinary(truncated);
+        Files.write(truncated, Arrays.copyOf(Files.readAllBytes(truncated), 40));
+        exception = assertThrows(IOException.class, () -> Module.map(truncated));
+        assertThat(exception).hasMessageStartingWith("Corrupted binary graph file");
+    }
+
     @Test
     void throws_an_IllegalArgumentException_when_source_file_cannot_be_found() {
         Module module = new Module(Collections.emptyList());
@@ -95,6 +188,159 @@ class ModuleTest {
                 .containsExactly(secondFile);
     }
 
+    @Test
+    void lists_each_impacted_source_file_once_in_module_order() {
+        Path pathToFile = Path.of("src/main/java/org/example/Base.java");
+        SourceFile changedFile = new SourceFile(pathToFile, List.of("org.example.Base", "org.example.Base.Inner"), Collections.emptyList());
+        SourceFile firstImporter = new SourceFile(
+                Path.of("src/main/java/org/example/First.java"),
+                List.of("org.example.First"),
+                List.of("org.example.Base", "org.example.Base.Inner")
+        );
+        SourceFile unrelated = new SourceFile(
+                Path.of("src/main/java/org/example/Unrelated.java"),
+                List.of("org.example.Unrelated"),
+                List.of("org.example.First")
+        );
+        SourceFile secondImporter = new SourceFile(
+                Path.of("src/main/java/org/example/Second.java"),
+                List.of("org.example.Second"),
+                List.of("org.example.Base.Inner")
+        );
+        Module module = new Module(List.of(secondImporter, changedFile, unrelated, firstImporter));
+        List<SourceFile> impactedSourceFiles = module.getSourceFilesImpactedByChangeOf(pathToFile);
+        assertThat(impactedSourceFiles).containsExactly(secondImporter, firstImporter);
+    }
+
+    @Test
+    void lists_transitively_impacted_source_files_by_distance() {
+        SourceFile base = new SourceFile(Path.of("Base.java"), List.of("org.example.Base"), Collections.emptyList());
+        SourceFile child = new SourceFile(Path.of("Child.java"), List.of("org.example.Child"), List.of("org.example.Base"));
+        SourceFile grandChild = new SourceFile(Path.of("GrandChild.java"), List.of("org.example.GrandChild"), List.of("org.example.Child"));
+        SourceFile user = new SourceFile(Path.of("User.java"), List.of("org.example.User"), List.of("org.example.GrandChild", "org.example.Base"));
+        Module module = new Module(List.of(grandChild, user, child, base));
+
+        assertThat(module.getSourceFilesTransitivelyImpactedByChangeOf(Path.of("Base.java")))
+                .containsExactly(user, child, grandChild);
+        assertThat(module.getSourceFilesTransitivelyImpactedByChangeOf(Path.of("Child.java")))
+                .containsExactly(grandChild, user);
+        assertThat(module.getSourceFilesTransitivelyImpactedByChangeOf(Path.of("User.java")))
+                .isEmpty();
+    }
+
+    @Test
+    void stops_transitive_impact_at_the_requested_depth() {
+        SourceFile base = new SourceFile(Path.of("Base.java"), List.of("org.example.Base"), Collections.emptyList());
+        SourceFile child = new SourceFile(Path.of("Child.java"), List.of("org.example.Child"), List.of("org.example.Base"));
+        SourceFile grandChild = new SourceFile(Path.of("GrandChild.java"), List.of("org.example.GrandChild"), List.of("org.example.Child"));
+        Module module = new Module(List.of(base, child, grandChild));
+
+        assertThat(module.getSourceFilesTransitivelyImpactedByChangeOf(Path.of("Base.java"), 0)).isEmpty();
+        assertThat(module.getSourceFilesTransitivelyImpactedByChangeOf(Path.of("Base.java"), 1)).containsExactly(child);
+        assertThat(module.getSourceFilesTransitivelyImpactedByChangeOf(Path.of("Base.java"), 2)).containsExactly(child, grandChild);
+        assertThrows(
+                IllegalArgumentException.class,
+                () -> module.getSourceFilesTransitivelyImpactedByChangeOf(Path.of("Base.java"), -1)
+        );
+    }
+
+    @Test
+    void transitive_impact_terminates_on_cycles() {
+        SourceFile first = new SourceFile(Path.of("First.java"), List.of("org.example.First"), List.of("org.example.Second"));
+        SourceFile second = new SourceFile(Path.of("Second.java"), List.of("org.example.Second"), List.of("org.example.First"));
+        Module module = new Module(List.of(first, second));
+
+        assertThat(module.getSourceFilesTransitivelyImpactedByChangeOf(Path.of("First.java"))).containsExactly(second);
+    }
+
+    @Test
+    void lists_the_dependencies_of_a_source_file() {
+        SourceFile base = new SourceFile(Path.of("Base.java"), List.of("org.example.Base"), Collections.emptyList());
+        SourceFile other = new SourceFile(Path.of("Other.java"), List.of("org.example.Other"), Collections.emptyList());
+        SourceFile child = new SourceFile(Path.of("Child.java"), List.of("org.example.Child"), List.of("org.example.Other", "org.example.Base"));
+        Module module = new Module(List.of(base, other, child));
+
+        assertThat(module.getDependenciesOf(Path.of("Child.java"))).containsExactly(base, other);
+        assertThat(module.getDependenciesOf(Path.of("Base.java"))).isEmpty();
+        assertThrows(IllegalArgumentException.class, () -> module.getDependenciesOf(Path.of("Missing.java")));
+    }
+
+    @Test
+    void finds_a_shortest_dependency_path() {
+        SourceFile base = new SourceFile(Path.of("Base.java"), List.of("org.example.Base"), Collections.emptyList());
+        SourceFile child = new SourceFile(Path.of("Child.java"), List.of("org.example.Child"), List.of("org.example.Base"));
+        SourceFile grandChild = new SourceFile(Path.of("GrandChild.java"), List.of("org.example.GrandChild"), List.of("org.example.Child"));
+        SourceFile user = new SourceFile(Path.of("User.java"), List.of("org.example.User"), List.of("org.example.GrandChild", "org.example.Base"));
+        Module module = new Module(List.of(base, child, grandChild, user));
+
+        assertThat(module.getDependencyPath(Path.of("User.java"), Path.of("Base.java"))).containsExactly(user, base);
+        assertThat(module.getDependencyPath(Path.of("User.java"), Path.of("Child.java"))).containsExactly(user, grandChild, child);
+        assertThat(module.getDependencyPath(Path.of("Base.java"), Path.of("User.java"))).isEmpty();
+        assertThat(module.getDependencyPath(Path.of("Base.java"), Path.of("Base.java"))).containsExactly(base);
+        assertThrows(IllegalArgumentException.class, () -> module.getDependencyPath(Path.of("Base.java"), Path.of("Missing.java")));
+    }
+
+    @Test
+    void computes_the_impact_of_a_change_set_in_a_single_pass() {
+        SourceFile base = new SourceFile(Path.of("Base.java"), List.of("org.example.Base"), Collections.emptyList());
+        SourceFile other = new SourceFile(Path.of("Other.java"), List.of("org.example.Other"), Collections.emptyList());
+        SourceFile child = new SourceFile(Path.of("Child.java"), List.of("org.example.Child"), List.of("org.example.Base"));
+        SourceFile grandChild = new SourceFile(Path.of("GrandChild.java"), List.of("org.example.GrandChild"), List.of("org.example.Child"));
+        SourceFile user = new SourceFile(Path.of("User.java"), List.of("org.example.User"), List.of("org.example.Other"));
+        Module module = new Module(List.of(base, other, child, grandChild, user));
+
+        ChangeSetImpact impact = module.getImpactOfChangeSet(List.of(
+                Path.of("Base.java"),
+                Path.of("Missing.java"),
+                Path.of("Child.java"),
+                Path.of("Other.java"),
+                Path.of("Base.java")
+        ));
+
+        assertThat(impact.impacted).containsExactly(grandChild, user);
+        assertThat(impact.unknownPaths).containsExactly(Path.of("Missing.java"));
+        assertThat(module.getImpactOfChangeSet(List.of(Path.of("Base.java")), 1).impacted).containsExactly(child);
+    }
+
+    @Test
+    void files_declaring_the_same_class_are_all_impacting_its_importers() {
+        SourceFile firstDeclaration = new SourceFile(Path.of("main/Shared.java"), List.of("org.example.Shared"), Collections.emptyList());
+        SourceFile secondDeclaration = new SourceFile(Path.of("test/Shared.java"), List.of("org.example.Shared"), Collections.emptyList());
+        SourceFile importer = new SourceFile(Path.of("User.java"), List.of("org.example.User"), List.of("org.example.Shared"));
+        Module module = new Module(List.of(firstDeclaration, importer, secondDeclaration));
+
+        assertThat(module.getSourceFilesImpactedByChangeOf(Path.of("main/Shared.java"))).containsExactly(importer);
+        assertThat(module.getSourceFilesImpactedByChangeOf(Path.of("test/Shared.java"))).containsExactly(importer);
+    }
+
+    @Test
+    void finds_source_files_from_absolute_and_relative_paths() {
+        SourceFile base = new SourceFile(
+                Path.of("/home/ci/repository/module/src/main/java/org/example/Base.java"),
+                List.of("org.example.Base"),
+                Collections.emptyList()
+        );
+        SourceFile child = new SourceFile(
+                Path.of("/home/ci/repository/module/src/main/java/org/example/child/Child.java"),
+                List.of("org.example.child.Child"),
+                List.of("org.example.Base")
+        );
+        Module module = new Module(List.of(base, child));
+
+        assertThat(module.getSourceFilesImpactedByChangeOf(Path.of("/home/ci/repository/module/src/main/java/org/example/Base.java")))
+                .containsExactly(child);
+        assertThat(module.getSourceFilesImpactedByChangeOf(Path.of("/home/ci/repository/module/src/main/java/org/example/child/../Base.java")))
+                .containsExactly(child);
+        assertThat(module.getSourceFilesImpactedByChangeOf(Path.of("module/src/main/java/org/example/Base.java")))
+                .containsExactly(child);
+        assertThat(module.getSourceFilesImpactedByChangeOf(Path.of("./module/src/main/java/org/example/Base.java")))
+                .containsExactly(child);
+        assertThrows(
+                IllegalArgumentException.class,
+                () -> module.getSourceFilesImpactedByChangeOf(Path.of("other/src/main/java/org/example/Base.java"))
+        );
+    }
+
     @Test
     void returns_a_dot_representation_with_a_single_file() throws IOException {
         Path directory = Path.of("src", "test", "resources", "dot");
@@ -123,4 +369,60 @@ class ModuleTest {
             assertThat(graph).isEqualToIgnoringNewLines(new String(in.readAllBytes(), Charset.defaultCharset()));
         }
     }
-}
\ No newline at end of file
+
+    @Test
+    void streams_a_dot_representation_clustered_by_package() throws IOException {
+        Path expected = Path.of("src", "test", "resources", "dot", "package-clusters.dot");
+        Module module = new Module(List.of(
+                new SourceFile(Path.of("src/a/A.java"), List.of("org.a.A"), List.of("org.b.B", "org.b.C", "org.a.A2")),
+                new SourceFile(Path.of("src/a/A2.java"), List.of("org.a.A2"), Collections.emptyList()),
+                new SourceFile(Path.of("src/b/B.java"), List.of("org.b.B"), List.of("org.a.A")),
+                new SourceFile(Path.of("src/b/C.java"), List.of("org.b.C"), Collections.emptyList()),
+                new SourceFile(Path.of("D.java"), List.of("D"), List.of("org.b.C"))
+        ));
+        StringWriter writer = new StringWriter();
+
+        module.writeDot(writer, DotGranularity.PACKAGE);
+
+        try (FileInputStream in = new FileInputStream(expected.toFile())) {
+            assertThat(writer.toString()).isEqualToIgnoringNewLines(new String(in.readAllBytes(), Charset.defaultCharset()));
+        }
+    }
+
+    @Test
+    void streams_a_dot_representation_clustered_by_directory() throws IOException {
+        Module module = new Module(List.of(
+                new SourceFile(Path.of("src/a/A.java"), List.of("org.a.A"), List.of("org.b.B", "org.b.C")),
+                new SourceFile(Path.of("src/b/B.java"), List.of("org.b.B"), Collections.emptyList()),
+                new SourceFile(Path.of("src/b/C.java"), List.of("org.b.C"), Collections.emptyList())
+        ));
+        StringWriter writer = new StringWriter();
+
+        module.writeDot(writer, DotGranularity.DIRECTORY);
+
+        assertThat(writer.toString())
+                .contains("subgraph \"cluster_0\" {", "label = \"src/a\";", "subgraph \"cluster_1\" {", "label = \"src/b\";")
+                .contains("\"src/a\" -> \"src/b\" [weight=2, label=\"2\"];")
+                .doesNotContain("A.java");
+        assertThat(module.toDot()).isEqualTo(writeDot(module, DotGranularity.FILE));
+    }
+
+    @Test
+    void escapes_the_backslashes_of_windows_paths_in_dot() throws IOException {
+        Module module = new Module(List.of(
+                new SourceFile(Path.of("C:\\src\\a\\A.java"), List.of("org.a.A"), List.of("org.b.B")),
+                new SourceFile(Path.of("C:\\src\\b\\\"B\".java"), List.of("org.b.B"), Collections.emptyList())
+        ));
+
+        assertThat(module.toDot()).contains("\"C:\\\\src\\\\a\\\\A.java\" -> \"C:\\\\src\\\\b\\\\\\\"B\\\".java\";");
+        assertThat(writeDot(module, DotGranularity.DIRECTORY))
+                .contains("label = \"C:\\\\src\\\\a\";")
+                .contains("\"C:\\\\src\\\\a\" [shape=box, label=\"C:\\\\src\\\\a\\n1 files, 0 internal imports\"];");
+    }
+
+    private static String writeDot(Module module, DotGranularity granularity) throws IOException {
+        StringWriter writer = new StringWriter();
+        module.writeDot(writer, granularity);
+        return writer.toString();
+    }
+}
@@ -0,0 +1,89 @@
+/*
+ * Copyright (C) 2023 Dorian Burihabwa
+ * This code is released under [MIT No Attribution](https://opensource.org/licenses/MIT-0) license.
+ */
+package com.burihabwa.source.graph;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class ShardedModuleTest {
+    private static final List<SourceFile> SOURCE_FILES = Arrays.asList(
+            new SourceFile(Path.of("/repo/src/a/A.java"), List.of("a.A"), List.of("b.B")),
+            new SourceFile(Path.of("/repo/src/b/B.java"), List.of("b.B", "b.B.Inner"), List.of("c.C")),
+            new SourceFile(Path.of("/repo/src/c/C.java"), List.of("c.C"), Collections.emptyList()),
+            new SourceFile(Path.of("/repo/src/c/Other.java"), List.of("c.Other"), List.of("b.B.Inner")),
+            new SourceFile(Path.of("/repo/src/d/D.java"), List.of("d.D"), List.of("c.C", "c.Other")),
+            new SourceFile(Path.of("/repo/src/e/E.java"), List.of("e.E"), Collections.emptyList())
+    );
+
+    @Test
+    void answers_the_same_queries_as_the_whole_module(@TempDir Path tempDir) throws IOException {
+        Module module = new Module(SOURCE_FILES);
+        ShardedModule.write(module, tempDir, 3);
+
+        ShardedModule sharded = ShardedModule.open(tempDir);
+
+        assertThat(sharded.size()).isEqualTo(module.size());
+        for (SourceFile sourceFile : SOURCE_FILES) {
+            Path path = sourceFile.path;
+            assertThat(sharded.getDependenciesOf(path)).isEqualTo(module.getDependenciesOf(path));
+            assertThat(sharded.getSourceFilesImpactedByChangeOf(path)).isEqualTo(module.getSourceFilesImpactedByChangeOf(path));
+            assertThat(sharded.getSourceFilesTransitivelyImpactedByChangeOf(path))
+                    .isEqualTo(module.getSourceFilesTransitivelyImpactedByChangeOf(path));
+            assertThat(sharded.getSourceFilesTransitivelyImpactedByChangeOf(path, 1))
+                    .isEqualTo(module.getSourceFilesTransitivelyImpactedByChangeOf(path, 1));
+        }
+        assertThat(sharded.getDependenciesOf(Path.of("src/d/D.java"))).containsExactly(SOURCE_FILES.get(2), SOURCE_FILES.get(3));
+    }
+
+    @Test
+    void only_loads_the_shards_a_query_reaches(@TempDir Path tempDir) throws IOException {
+        ShardedModule.write(new Module(SOURCE_FILES), tempDir, 64);
+
+        ShardedModule sharded = ShardedModule.open(tempDir);
+        assertThat(sharded.loadedShards()).isZero();
+
+        assertThat(sharded.getSourceFilesImpactedByChangeOf(Path.of("/repo/src/e/E.java"))).isEmpty();
+        assertThat(sharded.loadedShards()).isEqualTo(1);
+
+        assertThat(sharded.getDependenciesOf(Path.of("/repo/src/a/A.java"))).containsExactly(SOURCE_FILES.get(1));
+        assertThat(sharded.loadedShards()).isLessThanOrEqualTo(3);
+    }
+
+    @Test
+    void removes_the_shards_of_a_previous_layout(@TempDir Path tempDir) throws IOException {
+        Module module = new Module(SOURCE_FILES);
+        ShardedModule.write(module, tempDir, 8);
+
+        ShardedModule.write(module, tempDir, 2);
+
+        try (var files = Files.list(tempDir)) {
+            assertThat(files.map(file -> file.getFileName().toString()))
+                    .containsExactlyInAnyOrder("manifest.json", "shard-0.json", "shard-1.json");
+        }
+        Path changed = Path.of("/repo/src/c/C.java");
+        assertThat(ShardedModule.open(tempDir).getSourceFilesTransitivelyImpactedByChangeOf(changed))
+                .isEqualTo(module.getSourceFilesTransitivelyImpactedByChangeOf(changed));
+    }
+
+    @Test
+    void rejects_unknown_files(@TempDir Path tempDir) throws IOException {
+        ShardedModule.write(new Module(SOURCE_FILES), tempDir, 4);
+        ShardedModule sharded = ShardedModule.open(tempDir);
+
+        assertThrows(IllegalArgumentException.class, () -> sharded.getDependenciesOf(Path.of("/repo/src/a/Missing.java")));
+        assertThrows(IllegalArgumentException.class, () -> sharded.getDependenciesOf(Path.of("/repo/src/z/Z.java")));
+        assertThrows(IllegalArgumentException.class, () -> ShardedModule.write(new Module(SOURCE_FILES), tempDir, 0));
+    }
+}
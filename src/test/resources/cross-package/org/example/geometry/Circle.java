@@ -0,0 +1,16 @@
+package org.example.geometry;
+
+import org.example.shapes.Shape;
+
+public class Circle implements Shape {
+    private final double radius;
+
+    public Circle(double radius) {
+        this.radius = radius;
+    }
+
+    @Override
+    public double area() {
+        return Math.PI * radius * radius;
+    }
+}
@@ -0,0 +1,4 @@
+package org.example.local;
+
+interface Measurable {
+}
@@ -0,0 +1,31 @@
+package org.example.local;
+
+import java.util.List;
+import java.util.function.Supplier;
+
+class Outer {
+    private final Supplier<String> name = () -> "outer";
+
+    static {
+        class StaticLocal extends Shape {
+        }
+    }
+
+    int count(List<String> values) {
+        if (values.isEmpty()) {
+            class Empty extends Shape {
+            }
+            return 0;
+        }
+        try {
+            class Counter implements Measurable {
+            }
+            return (int) values.stream().filter(value -> !value.isEmpty()).count();
+        } finally {
+            values.forEach(value -> System.out.println(value));
+        }
+    }
+
+    static class Nested extends Shape implements Measurable {
+    }
+}